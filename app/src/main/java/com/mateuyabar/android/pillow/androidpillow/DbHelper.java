@@ -9,7 +9,7 @@ import com.mateuyabar.android.pillow.AbstractDBHelper;
 
 public class DbHelper extends AbstractDBHelper {
 	// If you change the database schema, you must increment the database version.
-    public static int DATABASE_VERSION = 3;
+    public static int DATABASE_VERSION = 4;
 	public static String DATABASE_NAME = "pillow_sample.db";
 	
 	
@@ -19,7 +19,7 @@ public class DbHelper extends AbstractDBHelper {
 
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-		resetTables(db);
+		migrateTables(db);
 	}
 
 	
@@ -5,6 +5,7 @@ import android.content.Context;
 
 import com.google.gson.reflect.TypeToken;
 import com.mateuyabar.android.pillow.PillowConfigXml;
+import com.mateuyabar.android.pillow.androidpillow.models.SampleCategory;
 import com.mateuyabar.android.pillow.androidpillow.models.SampleModel;
 import com.mateuyabar.android.pillow.conf.DefaultModelConfiguration;
 import com.mateuyabar.android.pillow.conf.DefaultModelPresenterViewConfiguration;
@@ -22,6 +23,7 @@ public class PillowConfiguration implements IModelViewConfigurations {
         String url = config.getUrl();
 
         List<ModelConfiguration<?>> configurations= new ArrayList<ModelConfiguration<?>>();
+        configurations.add(new DefaultModelConfiguration<>(context, SampleCategory.class, new TypeToken<Collection<SampleCategory>>(){}, url));
         DefaultModelConfiguration<SampleModel> sampleModelConfiguration = new DefaultModelConfiguration<>(context, SampleModel.class, new TypeToken<Collection<SampleModel>>(){}, url);
         configurations.add(sampleModelConfiguration);
         return configurations;
@@ -30,6 +32,7 @@ public class PillowConfiguration implements IModelViewConfigurations {
     @Override
     public List<ModelViewConfiguration<?>> getModelViewConfigurators(Context context, PillowConfigXml config) {
         List<ModelViewConfiguration<?>> configurations = new ArrayList<>();
+        configurations.add(new DefaultModelPresenterViewConfiguration<SampleCategory>(SampleCategory.class));
         configurations.add(new DefaultModelPresenterViewConfiguration<SampleModel>(SampleModel.class));
         return configurations;
     }
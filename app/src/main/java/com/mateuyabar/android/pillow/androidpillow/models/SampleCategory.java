@@ -0,0 +1,22 @@
+package com.mateuyabar.android.pillow.androidpillow.models;
+
+import com.mateuyabar.android.pillow.data.models.AbstractIdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.GenerateDbMapping;
+
+@GenerateDbMapping
+public class SampleCategory extends AbstractIdentificableModel {
+    String name;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
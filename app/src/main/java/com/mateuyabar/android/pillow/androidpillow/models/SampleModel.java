@@ -1,7 +1,11 @@
 package com.mateuyabar.android.pillow.androidpillow.models;
 
 import com.mateuyabar.android.pillow.data.models.AbstractIdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.BelongsToOnDelete;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.GenerateDbMapping;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.ValueType;
 
+@GenerateDbMapping
 public class SampleModel extends AbstractIdentificableModel {
     public enum SampleEnum {option1, option2};
 
@@ -9,6 +13,12 @@ public class SampleModel extends AbstractIdentificableModel {
     String name;
     int integer;
     SampleEnum sampleEnum;
+    @ValueType(belongsTo = SampleCategory.class, belongsToMode = BelongsToOnDelete.SET_NULL)
+    String sampleCategoryId;
+    /**
+     * Parent of sampleCategoryId, loaded by the list and show screens
+     */
+    transient SampleCategory sampleCategory;
 
     public String getName() {
         return name;
@@ -34,8 +44,20 @@ public class SampleModel extends AbstractIdentificableModel {
         this.sampleEnum = sampleEnum;
     }
 
+    public String getSampleCategoryId() {
+        return sampleCategoryId;
+    }
+
+    public void setSampleCategoryId(String sampleCategoryId) {
+        this.sampleCategoryId = sampleCategoryId;
+    }
+
+    public SampleCategory getSampleCategory() {
+        return sampleCategory;
+    }
+
     @Override
     public String toString() {
-        return name;
+        return sampleCategory == null ? name : name + " (" + sampleCategory + ")";
     }
 }
@@ -26,15 +26,22 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.util.Log;
 import com.mateuyabar.android.pillow.conf.ModelConfiguration;
 import com.mateuyabar.android.pillow.data.db.DBUtil;
+import com.mateuyabar.android.pillow.data.db.DateColumnsMigration;
 import com.mateuyabar.android.pillow.data.db.IDbMapping;
+import com.mateuyabar.android.pillow.data.db.ModelCache;
+import com.mateuyabar.android.pillow.data.db.SchemaMigrator;
+import com.mateuyabar.android.pillow.data.db.SearchIndex;
+import com.mateuyabar.android.pillow.data.db.TableVersions;
 import com.mateuyabar.android.pillow.data.sync.DeletedEntries;
 
 public abstract class AbstractDBHelper extends SQLiteOpenHelper{
 	public static final String LOG_ID = Pillow.LOG_ID+" - DB"; 
 	Context context;
+	boolean writeAheadLogging;
 	public AbstractDBHelper(Context context, String name, CursorFactory factory, int version) {
 		super(context, name, factory, version);
 		this.context = context;
@@ -54,6 +61,19 @@ public abstract class AbstractDBHelper extends SQLiteOpenHelper{
 		return mappings;
 	}
 	
+	/**
+	 * Enables write ahead logging. Must be called before the database is opened.
+	 */
+	public void setWriteAheadLogging(boolean writeAheadLogging) {
+		this.writeAheadLogging = writeAheadLogging;
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+			setWriteAheadLoggingEnabled(writeAheadLogging);
+	}
+
+	public boolean isWriteAheadLogging() {
+		return writeAheadLogging;
+	}
+
 	@Override
 	public SQLiteDatabase getReadableDatabase() {
 		return super.getReadableDatabase();
@@ -67,7 +87,15 @@ public abstract class AbstractDBHelper extends SQLiteOpenHelper{
 	@Override
 	public void onOpen(SQLiteDatabase db) {
 	    super.onOpen(db);
+	    if(writeAheadLogging && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly())
+	    	db.enableWriteAheadLogging();
 	    enableForeignKeys(db);
+	    if(DBUtil.isDatesAsMillis() && !db.isReadOnly())
+	    	DateColumnsMigration.migrate(db, getMappings());
+	    if(!db.isReadOnly()){
+	    	createIndexes(db);
+	    	updateSearchIndexes(db);
+	    }
 	}
 	
 	protected void enableForeignKeys(SQLiteDatabase db) {
@@ -82,6 +110,19 @@ public abstract class AbstractDBHelper extends SQLiteOpenHelper{
 		createTables(db);
 	}
 	
+	/**
+	 * Updates the existing tables to the current models keeping the stored data. Can be used in onUpgrade instead
+	 * of resetTables.
+	 * @see SchemaMigrator
+	 */
+	public void migrateTables(SQLiteDatabase db){
+		SchemaMigrator.migrate(db, getMappings());
+		ModelCache.clearAll();
+		TableVersions.incrementAll();
+		createIndexes(db);
+		updateSearchIndexes(db);
+	}
+
 	public void createTables(SQLiteDatabase db){
 		enableForeignKeys(db);
 		
@@ -99,11 +140,45 @@ public abstract class AbstractDBHelper extends SQLiteOpenHelper{
 				db.execSQL(trigger);
 			}
 		}
+		createIndexes(db);
+		updateSearchIndexes(db);
+	}
+
+	/**
+	 * Creates, rebuilds or drops the full text search indexes to match the Searchable fields. As createIndexes, tables
+	 * that do not exist yet are skipped.
+	 * @see SearchIndex
+	 */
+	public void updateSearchIndexes(SQLiteDatabase db){
+		for(IDbMapping<?> mapping: getMappings()){
+			if(DBUtil.existsTable(db, mapping.getTableName()))
+				SearchIndex.update(db, mapping);
+		}
+	}
+
+	/**
+	 * Creates the missing indexes (statements use IF NOT EXISTS, so it can be called on existing databases).
+	 * Tables that do not exist yet (models added without upgrading the database) are skipped.
+	 */
+	public void createIndexes(SQLiteDatabase db){
+		if(DBUtil.existsTable(db, DeletedEntries.TABLE))
+			db.execSQL(DeletedEntries.CREATE_INDEX);
+		for(IDbMapping<?> mapping: getMappings()){
+			if(!DBUtil.existsTable(db, mapping.getTableName()))
+				continue;
+			for(String index:mapping.getIndexes()){
+				db.execSQL(index);
+			}
+		}
 	}
 	
 	public void dropTables(SQLiteDatabase db) {
 		db.execSQL("DROP TABLE IF EXISTS "+DeletedEntries.TABLE);
+		DeletedEntries.invalidateCaches();
+		ModelCache.clearAll();
+		TableVersions.incrementAll();
 		for(IDbMapping<?> mapping: getMappings()){
+			SearchIndex.drop(db, mapping.getTableName());
 			db.execSQL(DBUtil.dropTable(mapping));
 		}
 	}
@@ -25,6 +25,8 @@ import com.mateuyabar.android.pillow.conf.IModelConfigurations;
 import com.mateuyabar.android.pillow.conf.ModelConfiguration;
 import com.mateuyabar.android.pillow.conf.ModelConfigurationFactory;
 import com.mateuyabar.android.pillow.data.IDataSource;
+import com.mateuyabar.android.pillow.data.db.DBUtil;
+import com.mateuyabar.android.pillow.data.db.DbExecutor;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.data.sync.SynchManager;
 import com.mateuyabar.android.pillow.util.reflection.RelationGraph;
@@ -96,8 +98,13 @@ public class Pillow {
 	private void init(Context context, int xmlFileResId) throws ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, XmlPullParserException, IOException{
 		this.context=context;
 		config = new PillowConfigXml(context, xmlFileResId);
-		if(config.getDbHelper()!=null)
+		DBUtil.setDatesAsMillis(config.isDbDatesAsMillis());
+		if(config.getDbHelper()!=null) {
 			dbHelper = getClassFor(context, config.getDbHelper());
+			dbHelper.setWriteAheadLogging(config.isDbWriteAheadLogging());
+		}
+		int readerThreads = config.isDbWriteAheadLogging() ? config.getDbReaderThreads() : 1;
+		DbExecutor.setInstance(new DbExecutor(readerThreads, dbHelper, config.getDbWriteBatchSize(), config.getDbWriteBatchLatency()));
 		Class<IModelConfigurations> modelConfigurationsclazz = (Class<IModelConfigurations>) Class.forName(config.getModelConfigurations());
 		modelConfigurations = modelConfigurationsclazz.newInstance();
 		modelConfigurationFactory = new ModelConfigurationFactory(context, config, modelConfigurations);
@@ -26,12 +26,19 @@ import org.xmlpull.v1.XmlPullParserException;
 import android.content.Context;
 import android.content.res.XmlResourceParser;
 
+import com.mateuyabar.android.pillow.data.db.DbExecutor;
+
 public class PillowConfigXml {
 	String dbHelper;
 //	List<String> dataSources = new ArrayList<String>();
 	int downloadTimeInterval = 3600000;
 	int maxResponseWaitTime = 10000;
 	boolean dbMultiThread = false;
+	boolean dbDatesAsMillis = false;
+	boolean dbWriteAheadLogging = false;
+	int dbReaderThreads = DbExecutor.DEFAULT_READER_THREADS;
+	int dbWriteBatchSize = DbExecutor.DEFAULT_BATCH_SIZE;
+	int dbWriteBatchLatency = DbExecutor.DEFAULT_BATCH_LATENCY;
 	String modelConfigurations;
 	String url;
 
@@ -67,6 +74,16 @@ public class PillowConfigXml {
                 	maxResponseWaitTime = parser.getAttributeIntValue(0, 10000);//("vale");
                 } else if ("dbMultiThread".equals(tagName)){
                 	dbMultiThread = parser.getAttributeBooleanValue(0, false);
+                } else if ("dbDatesAsMillis".equals(tagName)){
+                	dbDatesAsMillis = parser.getAttributeBooleanValue(0, false);
+                } else if ("dbWriteAheadLogging".equals(tagName)){
+                	dbWriteAheadLogging = parser.getAttributeBooleanValue(0, false);
+                } else if ("dbReaderThreads".equals(tagName)){
+                	dbReaderThreads = parser.getAttributeIntValue(0, DbExecutor.DEFAULT_READER_THREADS);
+                } else if ("dbWriteBatchSize".equals(tagName)){
+                	dbWriteBatchSize = parser.getAttributeIntValue(0, DbExecutor.DEFAULT_BATCH_SIZE);
+                } else if ("dbWriteBatchLatency".equals(tagName)){
+                	dbWriteBatchLatency = parser.getAttributeIntValue(0, DbExecutor.DEFAULT_BATCH_LATENCY);
                 } else if ("url".equals(tagName)){
                 	url = parser.getAttributeValue(0);
                 }
@@ -94,6 +111,43 @@ public class PillowConfigXml {
 		return dbMultiThread;
 	}
 	
+	/**
+	 * @return true if Date and Calendar values are stored as epoch milliseconds instead of text.
+	 * Existing text columns are converted when the database is opened (DateColumnsMigration).
+	 */
+	public boolean isDbDatesAsMillis() {
+		return dbDatesAsMillis;
+	}
+
+	/**
+	 * @return true if the database uses write ahead logging (API 11+), so reads can run in parallel with a write
+	 * and see the data previous to its transaction
+	 */
+	public boolean isDbWriteAheadLogging() {
+		return dbWriteAheadLogging;
+	}
+
+	/**
+	 * @return number of threads used for database reads when write ahead logging is enabled
+	 */
+	public int getDbReaderThreads() {
+		return dbReaderThreads;
+	}
+
+	/**
+	 * @return max number of queued writes committed in a single transaction (1 disables batching)
+	 */
+	public int getDbWriteBatchSize() {
+		return dbWriteBatchSize;
+	}
+
+	/**
+	 * @return max milliseconds a write batch waits for more writes before committing
+	 */
+	public int getDbWriteBatchLatency() {
+		return dbWriteBatchLatency;
+	}
+
 	public String getModelConfigurations() {
 		return modelConfigurations;
 	}
@@ -26,8 +26,10 @@ import com.google.gson.reflect.TypeToken;
 import com.mateuyabar.android.pillow.Pillow;
 import com.mateuyabar.android.pillow.data.IDataSource;
 import com.mateuyabar.android.pillow.data.db.DbDataSource;
+import com.mateuyabar.android.pillow.data.db.GeneratedDbMappings;
 import com.mateuyabar.android.pillow.data.db.IDbMapping;
 import com.mateuyabar.android.pillow.data.db.ISynchLocalDbDataSource;
+import com.mateuyabar.android.pillow.data.db.ModelCache;
 import com.mateuyabar.android.pillow.data.db.MultiThreadDbDataSource;
 import com.mateuyabar.android.pillow.data.db.ReflectionDbMapping;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
@@ -35,6 +37,7 @@ import com.mateuyabar.android.pillow.data.rest.IRestMapping;
 import com.mateuyabar.android.pillow.data.rest.RailsRestMapping;
 import com.mateuyabar.android.pillow.data.sync.ISynchLocalDataSource;
 import com.mateuyabar.android.pillow.data.sync.SynchDataSource;
+import com.mateuyabar.android.pillow.data.sync.db.SynchDbDataSource;
 import com.mateuyabar.android.pillow.data.validator.DefaultValidator;
 import com.mateuyabar.android.pillow.data.validator.IValidator;
 
@@ -53,6 +56,10 @@ public class DefaultModelConfiguration<T extends IdentificableModel> implements
 	IValidator<T> validator;
 	ISynchLocalDataSource<T> localDataSource;
 	SharedPreferences preferences;
+	int modelCacheMaxEntries;
+	long modelCacheMaxBytes;
+	int queryCacheSize;
+	boolean readAfterWrite = true;
 	
 	public DefaultModelConfiguration(Context context, Class<T> modelClass, TypeToken<Collection<T>> collectionTypeToken, String url) {
 		super();
@@ -91,17 +98,51 @@ public class DefaultModelConfiguration<T extends IdentificableModel> implements
 		this.localDataSource = localDataSource;
 	}
 
+	/**
+	 * Enables the model cache (ModelCache) of the default local data source
+	 * @param maxEntries max number of cached models
+	 * @param maxBytes max estimated size of the cached models, 0 for no limit
+	 */
+	public void setModelCache(int maxEntries, long maxBytes) {
+		this.modelCacheMaxEntries = maxEntries;
+		this.modelCacheMaxBytes = maxBytes;
+	}
+
+	/**
+	 * Enables the cache of index results of the default local data source, valid until the table is modified
+	 * @param maxQueries max number of cached results
+	 */
+	public void setQueryCacheSize(int maxQueries) {
+		this.queryCacheSize = maxQueries;
+	}
+
+	/**
+	 * If false the default local data source returns the given model on create and update instead of reading it back
+	 * @see DbDataSource#setReadAfterWrite(boolean)
+	 */
+	public void setReadAfterWrite(boolean readAfterWrite) {
+		this.readAfterWrite = readAfterWrite;
+	}
+
 	protected SharedPreferences createSharedPreferences(){
 		SharedPreferences preferences = Pillow.getInstance(context).getSharedPreferences();
 		return preferences;
 	}
 
 	protected IDataSource<T> createDefaultDataSource() {
-		return new SynchDataSource<T>(modelClass, getLocalDataSource(), getRestMapping(), getContext());
+		ISynchLocalDataSource<T> localDataSource = getLocalDataSource();
+		if(localDataSource instanceof ISynchLocalDbDataSource)
+			return new SynchDbDataSource<T>(modelClass, (ISynchLocalDbDataSource<T>) localDataSource, getRestMapping(), getContext());
+		return new SynchDataSource<T>(modelClass, localDataSource, getRestMapping(), getContext());
 	}
 
 	private ISynchLocalDbDataSource<T> createDefaultLocalDataSource() {
-		return new MultiThreadDbDataSource<T>(new DbDataSource<>(getModelClass(), getContext(), getDbMapping()));
+		DbDataSource<T> dbDataSource = new DbDataSource<>(getModelClass(), getContext(), getDbMapping());
+		if(modelCacheMaxEntries>0)
+			dbDataSource.getDbModelController().setModelCache(new ModelCache<T>(getModelClass(), modelCacheMaxEntries, modelCacheMaxBytes));
+		dbDataSource.getDbModelController().setQueryCacheSize(queryCacheSize);
+		dbDataSource.setReadAfterWrite(readAfterWrite);
+		return new MultiThreadDbDataSource<T>(dbDataSource);
 	}
 
 	protected IRestMapping<T> createDefaultRestMapping() {
@@ -109,6 +150,9 @@ public class DefaultModelConfiguration<T extends IdentificableModel> implements
 	}
 
 	protected IDbMapping<T> createDefaultDbMapping() {
+		IDbMapping<T> generatedDbMapping = GeneratedDbMappings.create(getModelClass());
+		if(generatedDbMapping!=null)
+			return generatedDbMapping;
 		return new ReflectionDbMapping<T>(getModelClass());
 	}
 
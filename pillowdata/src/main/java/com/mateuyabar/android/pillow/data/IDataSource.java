@@ -21,6 +21,7 @@ package com.mateuyabar.android.pillow.data;
 import com.mateuyabar.android.pillow.data.core.IPillowResult;
 
 import java.util.Collection;
+import java.util.List;
 
 
 /**
@@ -36,6 +37,11 @@ public interface IDataSource <T>{
 	public IPillowResult<Collection<T>> index();
 
 	public IPillowResult<T> show(T model);
+
+	/**
+	 * Returns the instances of the given models (only the id is used) in the same order. Missing ones are null.
+	 */
+	public IPillowResult<List<T>> showAll(List<T> models);
 	
 	public IPillowResult<T> create(T model);
 	
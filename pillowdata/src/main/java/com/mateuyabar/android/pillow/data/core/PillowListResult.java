@@ -33,6 +33,8 @@ public class PillowListResult<T> extends PillowResult<List<T>> implements Listen
                 }
             }, this);
         }
+        if(size==0)
+            setResult(results);
     }
 
     @Override
@@ -20,21 +20,39 @@ package com.mateuyabar.android.pillow.data.db;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.database.sqlite.SQLiteStatement;
 
+import com.mateuyabar.android.pillow.Pillow;
+import com.mateuyabar.android.pillow.data.IDataSource;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.data.db.IDbMapping.IDBSelection;
+import com.mateuyabar.android.pillow.data.db.java2db.Java2DbManager;
 import com.mateuyabar.android.pillow.data.sync.DeletedEntries;
 import com.mateuyabar.android.pillow.data.sync.ISynchLocalDataSource;
-import com.mateuyabar.android.util.CursorUtil;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
+import com.mateuyabar.android.pillow.util.reflection.ReflectionUtil;
+import com.mateuyabar.util.exceptions.BreakFastException;
 import com.mateuyabar.util.StringUtil;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 
 
@@ -48,6 +66,19 @@ public class DBModelController<T extends IdentificableModel> {
 	public static final String COLUMN_NAME_ID = "id";
 	public static final String WHERE_ID_SELECTION = COLUMN_NAME_ID + " == ?";
 	
+	/**
+	 * Temporary table (per connection) where cacheAll stores the ids received, used to delete the ones not received
+	 */
+	private static final String CACHED_IDS_TABLE = "pillow_cached_ids";
+	private static final String CREATE_CACHED_IDS_TABLE = "CREATE TEMP TABLE IF NOT EXISTS " + CACHED_IDS_TABLE + " (" + COLUMN_NAME_ID + DBUtil.STRING_TYPE + " PRIMARY KEY)";
+	private static final String CLEAR_CACHED_IDS = "DELETE FROM " + CACHED_IDS_TABLE;
+	private static final String INSERT_CACHED_ID = "INSERT OR IGNORE INTO " + CACHED_IDS_TABLE + " (" + COLUMN_NAME_ID + ") VALUES (?)";
+
+	/**
+	 * Max number of bound parameters used in a query (SQLite limit is 999 by default)
+	 */
+	public static final int MAX_SQL_VARIABLES = 500;
+
 	public static final String COLUMN_TYPE_ID = DBUtil.STRING_TYPE;
 	public static final String COMMON_MODEL_ATTRIBUTES = COLUMN_NAME_ID + COLUMN_TYPE_ID + " PRIMARY KEY," + 
 			COLUMN_NAME_DIRTY + DBUtil.INT_TYPE + DBUtil.COMMA_SEP +
@@ -59,8 +90,36 @@ public class DBModelController<T extends IdentificableModel> {
 	IDbMapping<T> mapper;
 	DeletedEntries<T> deletedEntries;
 	Class<T> modelClass;
+	String[] insertColumns;
+	String insertSql;
+	String cacheUpdateSql;
+	String updateSql;
+	Boolean mergeOverridden;
+	/**
+	 * Identity map used by get, may be null
+	 */
+	volatile ModelCache<T> modelCache;
+	/**
+	 * Cache of index results, may be null
+	 */
+	volatile QueryCache<T> queryCache;
+	/**
+	 * Tables whose changes invalidate the cached index results and lazy lists: the table and the ones of the classes
+	 * whose delete triggers modify it
+	 */
+	String[] dependentTables;
+	/**
+	 * Plans used to fill view classes in projectedIndex, by view class
+	 */
+	final Map<Class<?>, HydrationPlan> viewPlans = new HashMap<Class<?>, HydrationPlan>();
+	static final Java2DbManager java2DbManager = new Java2DbManager();
+	/**
+	 * Compiled statements of the queries executed many times, kept on the DbExecutor writer thread
+	 */
+	final StatementCache statementCache = new StatementCache(20);
 
     public DBModelController(Class<T> modelClass, SQLiteOpenHelper dbHelper, IDbMapping<T> mapper) {
+		this.modelClass = modelClass;
 		this.dbHelper= dbHelper;
 		this.mapper = mapper;
 		//We allways store the deleted entries for synchronization. Small overhead.
@@ -76,8 +135,89 @@ public class DBModelController<T extends IdentificableModel> {
 		return deletedEntries;
 	}
 
+	public ModelCache<T> getModelCache() {
+		return modelCache;
+	}
+
+	/**
+	 * Sets the identity map used by get (null to disable it)
+	 */
+	public void setModelCache(ModelCache<T> modelCache) {
+		this.modelCache = modelCache;
+	}
+
+	/**
+	 * Adds the model to the cache, if any. Models read inside a transaction are not added, as it may be rolled back.
+	 */
+	private void putInCache(SQLiteDatabase db, T model, long cacheGeneration) {
+		ModelCache<T> cache = modelCache;
+		if(cache!=null && model!=null && !db.inTransaction())
+			cache.put(model, cacheGeneration);
+	}
+
+	/**
+	 * Enables the cache of index results (see TableVersions), keeping up to maxQueries results. 0 disables it.
+	 * Cached results are returned as new lists of copied models. Selections with subqueries are not cached, as the
+	 * tables they read are unknown (use ModelQuery, which knows them).
+	 */
+	public void setQueryCacheSize(int maxQueries) {
+		this.queryCache = maxQueries>0 ? new QueryCache<T>(maxQueries) : null;
+	}
+
+	/**
+	 * @return if the result of the selection only depends on the table (and the tables of getTableVersions)
+	 */
+	private static boolean isCacheable(String selection) {
+		return selection==null || !selection.toUpperCase(Locale.US).contains("SELECT");
+	}
+
+	/**
+	 * @return versions of the table and the ones whose delete triggers modify it (see TableVersions)
+	 */
+	synchronized long[] getTableVersions() {
+		if(dependentTables==null){
+			List<String> tables = new ArrayList<String>();
+			tables.add(getTableName());
+			for(Class<? extends IdentificableModel> parent: ModelCache.getTriggerParents(modelClass)){
+				tables.add(Pillow.getInstance().getModelConfiguration(parent).getDbMapping().getTableName());
+			}
+			dependentTables = tables.toArray(new String[tables.size()]);
+		}
+		long[] versions = new long[dependentTables.length];
+		for(int i=0; i<versions.length; ++i){
+			versions[i] = TableVersions.get(dependentTables[i]);
+		}
+		return versions;
+	}
+
+	/**
+	 * @param otherTables tables also read by the query (see ModelQuery.getJoinedTables)
+	 */
+	private long[] getTableVersions(Collection<String> otherTables) {
+		long[] tableVersions = getTableVersions();
+		long[] versions = Arrays.copyOf(tableVersions, tableVersions.length + otherTables.size());
+		int i = tableVersions.length;
+		for(String table: otherTables){
+			versions[i++] = TableVersions.get(table);
+		}
+		return versions;
+	}
+
+	/**
+	 * Must be called after every write on the table
+	 */
+	protected void tableModified(SQLiteDatabase db) {
+		TableVersions.increment(getTableName(), DbExecutor.isBatchTransaction());
+	}
+
+	private void invalidateCache(SQLiteDatabase db, String id) {
+		ModelCache<T> cache = modelCache;
+		if(cache!=null)
+			cache.invalidate(id, DbExecutor.isBatchTransaction());
+	}
+
 	public int getCount(){
-		return getColumnIntegerValue(null, null);
+		return getCount(null, null);
 	}
 
 	public int getCount(T filer) {
@@ -86,15 +226,19 @@ public class DBModelController<T extends IdentificableModel> {
 	}
 	
 	public int getCount(String selection, String[] selectionArgs){
+		return getCount(selection, (Object[]) selectionArgs);
+	}
+
+	/**
+	 * @param args bound with their type (see DBUtil.bind)
+	 */
+	private int getCount(String selection, Object[] args){
 		SQLiteDatabase db = dbHelper.getReadableDatabase();
 		String query = "SELECT COUNT(*) FROM "+ getTableName();
 		if(!StringUtil.isBlanck(selection)){
 			query += " WHERE "+selection;
 		}
-		Cursor cursor = db.rawQuery(query, selectionArgs);
-		cursor.moveToFirst();
-		int count= cursor.getInt(0);
-		cursor.close();
+		int count = (int) simpleQueryForLong(db, query, args);
 		close(db);
 		
 		return count;
@@ -114,6 +258,15 @@ public class DBModelController<T extends IdentificableModel> {
 	 * @return
 	 */
 	public T get(String id) {
+		ModelCache<T> cache = modelCache;
+		long cacheGeneration = 0;
+		if(cache!=null){
+			T cached = cache.get(id);
+			if(cached!=null)
+				return cached;
+			cacheGeneration = cache.getGeneration();
+		}
+
 		String selection = WHERE_ID_SELECTION;
 		String[] selectionArgs = { id };
 
@@ -122,11 +275,13 @@ public class DBModelController<T extends IdentificableModel> {
 
 		if (!cursor.moveToFirst()) {
 			// not present
+			cursor.close();
 			return null;
 		}
 
 		T model = createModel(db, cursor, true);
 		cursor.close();
+		putInCache(db, model, cacheGeneration);
 		close(db);
 		
 		return model;
@@ -148,10 +303,43 @@ public class DBModelController<T extends IdentificableModel> {
 		return cursor;
 	}
 	
+	/**
+	 * Returns the models with the given ids in the same order (null for the ones not present).
+	 * Ids are queried in chunks of MAX_SQL_VARIABLES.
+	 */
 	public List<T> get(Collection<String> ids){
-		List<T> result = new ArrayList<T>();
+		List<String> distinctIds = new ArrayList<String>(new LinkedHashSet<String>(ids));
+		distinctIds.remove(null);
+		Map<String, T> models = new HashMap<String, T>();
+		ModelCache<T> cache = modelCache;
+		long cacheGeneration = 0;
+		if(cache!=null){
+			cacheGeneration = cache.getGeneration();
+			List<String> notCached = new ArrayList<String>();
+			for(String id: distinctIds){
+				T cached = cache.get(id);
+				if(cached!=null)
+					models.put(id, cached);
+				else
+					notCached.add(id);
+			}
+			distinctIds = notCached;
+		}
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		for(int start=0; start<distinctIds.size(); start+=MAX_SQL_VARIABLES){
+			List<String> chunk = distinctIds.subList(start, Math.min(start+MAX_SQL_VARIABLES, distinctIds.size()));
+			String selection = COLUMN_NAME_ID + " IN (" + DBUtil.createPlaceholders(chunk.size()) + ")";
+			Cursor cursor = getCursor(db, selection, chunk.toArray(new String[chunk.size()]), null);
+			for(T model: createModels(db, cursor)){
+				models.put(model.getId(), model);
+				putInCache(db, model, cacheGeneration);
+			}
+		}
+		close(db);
+
+		List<T> result = new ArrayList<T>(ids.size());
 		for(String id:ids){
-			result.add(get(id));
+			result.add(id==null ? null : models.get(id));
 		}
 		return result;
 	}
@@ -181,13 +369,310 @@ public class DBModelController<T extends IdentificableModel> {
 	 */
 	public List<T> index(String selection, String[] selectionArgs, String order){
 		order = order!=null ? order : mapper.getDefaultModelOrder();
+		QueryCache<T> cache = isCacheable(selection) ? queryCache : null;
+		List<Object> cacheKey = null;
+		long[] versions = null;
+		if(cache!=null){
+			cacheKey = QueryCache.createKey(selection, selectionArgs, order);
+			versions = getTableVersions();
+			List<T> cached = cache.get(cacheKey, versions);
+			if(cached!=null)
+				return cached;
+		}
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		Cursor cursor = getCursor(db, selection, selectionArgs, order);
+		List<T> result = createModels(db, cursor);
+		if(cache!=null && !db.inTransaction())
+			cache.put(cacheKey, versions, result);
+		close(db);
+		return result;
+	}
+
+	/**
+	 * Same as index, but models are created when accessed. The returned list must be closed.
+	 * @see LazyModelList
+	 */
+	public LazyModelList<T> lazyIndex(String selection, String[] selectionArgs, String order){
+		order = order!=null ? order : mapper.getDefaultModelOrder();
+		long[] versions = getTableVersions();
 		SQLiteDatabase db = dbHelper.getReadableDatabase();
 		Cursor cursor = getCursor(db, selection, selectionArgs, order);
+		return new LazyModelList<T>(this, db, cursor, versions, LazyModelList.DEFAULT_WINDOW_SIZE);
+	}
+
+	public LazyModelList<T> lazyIndex(T filter) {
+		IDBSelection selection = mapper.getSelection(filter);
+		return lazyIndex(selection.getSelection(), selection.getArgs(), null);
+	}
+
+	/**
+	 * Returns a page of the models with the given selection (may be null), ordered by the default order and id.
+	 * @see PageRequest
+	 */
+	public Page<T> page(String selection, String[] selectionArgs, PageRequest request){
+		PageQuery query = PageQuery.create(mapper.getDefaultModelOrder());
+		IDBSelection pageSelection = query.getSelection(selection, selectionArgs, request);
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		Cursor cursor = getCursor(db, pageSelection.getSelection(), pageSelection.getArgs(), query.getOrderBy(), query.getLimit(request));
+		List<T> models = new ArrayList<T>();
+		String nextPageToken = null;
+		while (cursor.moveToNext()) {
+			if(models.size()==request.getLimit()){
+				cursor.moveToPrevious();
+				nextPageToken = query.createNextToken(request, cursor, models.size());
+				break;
+			}
+			models.add(createModel(db, cursor, true));
+		}
+		cursor.close();
+		close(db);
+		return new Page<T>(models, request, nextPageToken);
+	}
+
+	public Page<T> page(T filter, PageRequest request){
+		IDBSelection selection = mapper.getSelection(filter);
+		return page(selection.getSelection(), selection.getArgs(), request);
+	}
+
+	/**
+	 * Returns the models whose Searchable fields contain words starting with every word of the query, using the
+	 * full text search index (see SearchIndex). If the query has no words all the models are returned.
+	 * @param selection additional selection, may be null
+	 * @param limit max number of models returned, or 0 for no limit
+	 */
+	public List<T> search(String query, String selection, String[] selectionArgs, int limit){
+		String match = SearchIndex.createMatch(query);
+		if(match!=null){
+			String searchSelection = SearchIndex.createSelection(getTableName());
+			selection = selection==null ? searchSelection : searchSelection + " AND (" + selection + ")";
+			selectionArgs = merge(new String[]{match}, selectionArgs==null ? new String[0] : selectionArgs);
+		}
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		Cursor cursor = getCursor(db, selection, selectionArgs, mapper.getDefaultModelOrder(), limit>0 ? String.valueOf(limit) : null);
+		List<T> result = createModels(db, cursor);
+		close(db);
+		return result;
+	}
+
+	public List<T> search(String query, int limit){
+		return search(query, null, null, limit);
+	}
+
+	public List<T> search(String query, T filter, int limit){
+		IDBSelection selection = mapper.getSelection(filter);
+		return search(query, selection.getSelection(), selection.getArgs(), limit);
+	}
+
+	/**
+	 * Returns the models matching the query, ordered by the query order or the default one. Results are cached as the
+	 * ones of index, and also discarded when the parent or through tables of the query change.
+	 */
+	public List<T> index(ModelQuery<T> query){
+		String selection = query.getSelection();
+		Object[] args = query.getArgs();
+		String order = query.getOrderBy()!=null ? query.getOrderBy() : mapper.getDefaultModelOrder();
+		String limit = query.getLimit();
+		if(limit!=null){
+			Object[] limitArgs = query.getLimitArgs();
+			args = Arrays.copyOf(args, args.length + limitArgs.length);
+			System.arraycopy(limitArgs, 0, args, args.length - limitArgs.length, limitArgs.length);
+		}
+		QueryCache<T> cache = queryCache;
+		List<Object> cacheKey = null;
+		long[] versions = null;
+		if(cache!=null){
+			cacheKey = QueryCache.createKey(selection, args, limit==null ? order : order + " LIMIT " + limit);
+			versions = getTableVersions(query.getJoinedTables());
+			List<T> cached = cache.get(cacheKey, versions);
+			if(cached!=null)
+				return cached;
+		}
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		String[] projection = merge(new String[]{COLUMN_NAME_ID}, mapper.getModelAttributesForProjection());
+		String sql = SQLiteQueryBuilder.buildQueryString(false, getTableName(), projection, selection, null, null, order, null);
+		if(limit!=null)
+			sql += " LIMIT " + limit;
+		Cursor cursor = rawQuery(db, sql, args);
 		List<T> result = createModels(db, cursor);
+		if(cache!=null && !db.inTransaction())
+			cache.put(cacheKey, versions, result);
 		close(db);
 		return result;
 	}
 
+	/**
+	 * Number of models matching the query (order, limit and offset are ignored)
+	 */
+	public int getCount(ModelQuery<T> query){
+		return getCount(query.getSelection(), query.getArgs());
+	}
+
+	/**
+	 * Same as index, but only the columns of the given fields (and the id) are read. The other fields of the models
+	 * are left with their default value and relations are not added, so the models should only be used for display.
+	 * Results are not cached.
+	 * @param fields names of the model fields. Embedded fields include all their columns
+	 */
+	public List<T> projectedIndex(String[] fields, String selection, String[] selectionArgs, String order){
+		order = order!=null ? order : mapper.getDefaultModelOrder();
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		Cursor cursor = getCursor(db, getProjection(fields), selection, selectionArgs, order, null);
+		List<T> result = new ArrayList<T>();
+		while (cursor.moveToNext()) {
+			result.add(createModel(db, cursor, false));
+		}
+		cursor.close();
+		close(db);
+		return result;
+	}
+
+	public List<T> projectedIndex(String[] fields, T filter){
+		IDBSelection selection = mapper.getSelection(filter);
+		return projectedIndex(fields, selection.getSelection(), selection.getArgs(), null);
+	}
+
+	/**
+	 * Same as index, but fills instances of a view class instead of models. The stored fields of the view class
+	 * must have the name of fields of the model.
+	 */
+	public <V> List<V> projectedIndex(Class<V> viewClass, String selection, String[] selectionArgs, String order){
+		order = order!=null ? order : mapper.getDefaultModelOrder();
+		Field[] viewFields = ReflectionUtil.getStoredFields(viewClass);
+		String[] fields = new String[viewFields.length];
+		for(int i=0; i<viewFields.length; ++i){
+			fields[i] = viewFields[i].getName();
+		}
+		SQLiteDatabase db = dbHelper.getReadableDatabase();
+		Cursor cursor = getCursor(db, getProjection(fields), selection, selectionArgs, order, null);
+		List<V> result = new ArrayList<V>();
+		try {
+			HydrationPlan plan = getViewPlan(viewClass, cursor);
+			while (cursor.moveToNext()) {
+				result.add(plan.fill(cursor, viewClass.newInstance()));
+			}
+		} catch (InstantiationException e) {
+			throw new BreakFastException(e);
+		} catch (IllegalAccessException e) {
+			throw new BreakFastException(e);
+		} finally {
+			cursor.close();
+		}
+		close(db);
+		return result;
+	}
+
+	private HydrationPlan getViewPlan(Class<?> viewClass, Cursor cursor){
+		synchronized (viewPlans) {
+			HydrationPlan plan = viewPlans.get(viewClass);
+			if(plan==null){
+				plan = HydrationPlan.create(viewClass, "", cursor, java2DbManager);
+				viewPlans.put(viewClass, plan);
+			}
+			return plan;
+		}
+	}
+
+	/**
+	 * @return the columns to query to read the given fields, starting with the id
+	 * @throws IllegalArgumentException if a field is not stored in the table
+	 */
+	public String[] getProjection(String[] fields){
+		String[] columns = mapper.getModelAttributesForProjection();
+		LinkedHashSet<String> result = new LinkedHashSet<String>();
+		result.add(COLUMN_NAME_ID);
+		for(String field: fields){
+			if(field.equals(COLUMN_NAME_ID))
+				continue;
+			String embeddedPrefix = field + ReflectionDbMapping.EMBEDDED_MODEL_ATTRIBUTE_SEPARATOR;
+			boolean found = false;
+			for(String column: columns){
+				if(column.equals(field) || column.startsWith(embeddedPrefix)){
+					result.add(column);
+					found = true;
+				}
+			}
+			if(!found)
+				throw new IllegalArgumentException("Field " + field + " is not stored in " + getTableName());
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * Loads the parents of the given belongs to fields of the models (all the belongs to fields with a parent field if
+	 * none given) with a query per parent class, and sets them in the parent fields: by convention the transient field
+	 * xxx of the parent class for the belongs to field xxxId (see ClassMetadata.getBelongsToModelField).
+	 * Parents are read with the get of their controller, so they are also added to its model cache.
+	 * @param fields names of belongs to fields
+	 * @throws IllegalArgumentException if a given field is not a belongs to field with a parent field
+	 */
+	public void include(Collection<T> models, String... fields){
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		List<Field> includedFields = new ArrayList<Field>();
+		if(fields.length==0){
+			for(Field field: metadata.getBelongsToFields()){
+				if(metadata.getBelongsToModelField(field)!=null)
+					includedFields.add(field);
+			}
+		} else {
+			List<Field> belongsToFields = Arrays.asList(metadata.getBelongsToFields());
+			for(String name: fields){
+				Field field = metadata.getStoredField(name);
+				if(field==null || !belongsToFields.contains(field) || metadata.getBelongsToModelField(field)==null)
+					throw new IllegalArgumentException(name + " is not a belongs to field with a parent field in " + modelClass.getSimpleName());
+				includedFields.add(field);
+			}
+		}
+
+		try {
+			Map<Class<? extends IdentificableModel>, Set<String>> idsByClass = new LinkedHashMap<Class<? extends IdentificableModel>, Set<String>>();
+			for(Field field: includedFields){
+				Class<? extends IdentificableModel> parentClass = metadata.getValueType(field).belongsTo();
+				Set<String> ids = idsByClass.get(parentClass);
+				if(ids==null){
+					ids = new LinkedHashSet<String>();
+					idsByClass.put(parentClass, ids);
+				}
+				for(T model: models){
+					String id = (String) field.get(model);
+					if(id!=null)
+						ids.add(id);
+				}
+			}
+
+			Map<Class<? extends IdentificableModel>, Map<String, IdentificableModel>> parentsByClass = new HashMap<Class<? extends IdentificableModel>, Map<String, IdentificableModel>>();
+			for(Map.Entry<Class<? extends IdentificableModel>, Set<String>> entry: idsByClass.entrySet()){
+				Map<String, IdentificableModel> parents = new HashMap<String, IdentificableModel>();
+				DBModelController<?> parentController = getDbModelController(entry.getKey());
+				if(parentController!=null && !entry.getValue().isEmpty()){
+					for(IdentificableModel parent: parentController.get(entry.getValue())){
+						if(parent!=null)
+							parents.put(parent.getId(), parent);
+					}
+				}
+				parentsByClass.put(entry.getKey(), parents);
+			}
+
+			for(Field field: includedFields){
+				Map<String, IdentificableModel> parents = parentsByClass.get(metadata.getValueType(field).belongsTo());
+				Field modelField = metadata.getBelongsToModelField(field);
+				for(T model: models){
+					String id = (String) field.get(model);
+					modelField.set(model, id==null ? null : parents.get(id));
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new BreakFastException(e);
+		}
+	}
+
+	/**
+	 * @return the controller of a model class stored in the database, or null
+	 */
+	private static DBModelController<?> getDbModelController(Class<? extends IdentificableModel> modelClass){
+		IDataSource<?> dataSource = Pillow.getInstance().getModelConfiguration(modelClass).getDataSource();
+		return dataSource instanceof IDBDataSource ? ((IDBDataSource<?>) dataSource).getDbModelController() : null;
+	}
+
 	public List<T> indexRawQuery(String sql, String[] selectionArgs){
 		SQLiteDatabase db = dbHelper.getReadableDatabase();
 		Cursor cursor = db.rawQuery(sql, selectionArgs);
@@ -211,21 +696,19 @@ public class DBModelController<T extends IdentificableModel> {
 	public void delete(T model){
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		
-		//get dirty status
-		Cursor cursor = getCursorForId(db, model.getId());
-		cursor.moveToNext();
-		int dirtyStatus = CursorUtil.getInt(cursor, COLUMN_NAME_DIRTY);
-		cursor.close();
-		
-		String selection = WHERE_ID_SELECTION;
-		String[] selectionArgs = { model.getId() };
-		
-		db.delete(getTableName(), selection, selectionArgs);
-		if(dirtyStatus!= ISynchLocalDataSource.DIRTY_STATUS_CREATED && deletedEntries!=null){
+		if(deletedEntries!=null){
 			//deletedEntries != null so it can be used in no DB entries. This is ungly and may be changed!!!
 			//If the status is created it has not been sent to server yet, so we don't need to delete it.
-			deletedEntries.setToDelete(db, model);
+			//The entry is inserted from the stored row before deleting it, so its dirty status is not read.
+			String sql = deletedEntries.createInsertFromTable(getTableName(), COLUMN_NAME_DIRTY + " != " + ISynchLocalDataSource.DIRTY_STATUS_CREATED);
+			int inserted = executeUpdateDelete(db, sql, model.getClass().getName(), model.getId());
+			if(inserted>0)
+				deletedEntries.entryAdded(model);
 		}
+		executeUpdateDelete(db, getDeleteSql(), model.getId());
+		tableModified(db);
+		invalidateCache(db, model.getId());
+		ModelCache.invalidateDependents(modelClass, DbExecutor.isBatchTransaction());
 		close(db);
 	}
 	
@@ -264,125 +747,373 @@ public class DBModelController<T extends IdentificableModel> {
 	public void update(T model){
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		save(db, model, OP_UPDATE);
+		tableModified(db);
+		invalidateCache(db, model.getId());
 		close(db);
 	}
 	
 	public void create(T model){
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		save(db, model, OP_CREATE);
+		tableModified(db);
+		invalidateCache(db, model.getId());
 		close(db);
 	}
 
+	/**
+	 * Creates all the given models in a single transaction, reusing one compiled insert statement.
+	 * Much faster than calling create for each model when seeding big amounts of data.
+	 * @param models
+	 */
 	public void createAll(List<T> models){
-		SQLiteDatabase database = dbHelper.getWritableDatabase();
-		database.beginTransaction();
-		SQLiteStatement mushroomStmt = database.compileStatement("INSERT INTO Mushroom (id, latinname, name, description, names) VALUES(?, ?, ?, ?, ?)");
-		for(int i =0; i<models.size(); ++i){
-			T model = models.get(i);
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		long milis = System.currentTimeMillis();
+		db.beginTransaction();
+		SQLiteStatement statement = null;
+		try {
+			statement = db.compileStatement(getInsertSql());
+			for(int i =0; i<models.size(); ++i){
+				T model = models.get(i);
+				if(model.getId()==null)
+					model.setId(createUUID());
+				bindInsert(statement, model, ISynchLocalDataSource.DIRTY_STATUS_CREATED, milis);
+				statement.executeInsert();
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			if(statement!=null)
+				statement.close();
+			db.endTransaction();
+			tableModified(db);
+		}
+		close(db);
+	}
+
+	/**
+	 * @return columns used on insert statements: common columns followed by the model attributes
+	 */
+	protected synchronized String[] getInsertColumns(){
+		if(insertColumns==null){
+			insertColumns = merge(new String[]{COLUMN_NAME_ID, COLUMN_NAME_DIRTY, COLUMN_CREATED_AT, COLUMN_UPDATED_AT}, mapper.getModelAttributesForProjection());
+		}
+		return insertColumns;
+	}
 
+	protected synchronized String getInsertSql(){
+		if(insertSql==null){
+			insertSql = DBUtil.createInsert(getTableName(), getInsertColumns());
 		}
-		database.setTransactionSuccessful();
-		database.endTransaction();
-		close(database);
+		return insertSql;
 	}
 	
-	public void cacheAll(List<T> models) {
+	/**
+	 * Stores the models obtained from the server in a single transaction.
+	 * Existing ids, dirty states and deleted entries are loaded upfront with set based queries, and
+	 * inserts and updates are executed through reusable compiled statements.
+	 * Models modified locally (dirty) or deleted locally are skipped.
+	 * @param models
+	 * @return number of inserted, updated and skipped models
+	 */
+	public CacheResult cacheAll(List<T> models) {
+		CacheResult result = new CacheResult();
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
-		for(T model: models)
-			save(db, model, OP_CACHE);
-		
-		//check for models to delete: the ones deleted on the server 
-		String whereClause = COLUMN_NAME_DIRTY + " != "+ ISynchLocalDataSource.DIRTY_STATUS_CREATED + " AND "+ COLUMN_NAME_ID + " NOT IN "+getIdList(models);
-		String[] whereArgs = {}; 
-		//TODO if its dirty_update it is a conflict!
-		db.delete(getTableName(), whereClause, whereArgs);
-		
+		long milis = System.currentTimeMillis();
+		db.beginTransaction();
+		SQLiteStatement insertStatement = null;
+		SQLiteStatement updateStatement = null;
+		SQLiteStatement cachedIdStatement = null;
+		try {
+			insertStatement = db.compileStatement(getInsertSql());
+			updateStatement = db.compileStatement(getCacheUpdateSql());
+			db.execSQL(CREATE_CACHED_IDS_TABLE);
+			db.execSQL(CLEAR_CACHED_IDS);
+			cachedIdStatement = db.compileStatement(INSERT_CACHED_ID);
+			Map<String, Integer> dirtyStates = getDirtyStates(db);
+			boolean merge = isMergeOverridden();
+			for(T model: models){
+				String id = model.getId();
+				cachedIdStatement.bindString(1, id);
+				cachedIdStatement.executeInsert();
+				Integer dirtyStatus = dirtyStates.get(id);
+				if(dirtyStatus==null){
+					//Not stored
+					if(deletedEntries!=null && deletedEntries.isDeleted(db, id)){
+						//If deleted on the local database we don't want to get it back
+						result.skipped++;
+						continue;
+					}
+					bindInsert(insertStatement, model, ISynchLocalDataSource.DIRTY_STATUS_CLEAN, milis);
+					insertStatement.executeInsert();
+					dirtyStates.put(id, ISynchLocalDataSource.DIRTY_STATUS_CLEAN);
+					result.inserted++;
+				} else if(dirtyStatus == ISynchLocalDataSource.DIRTY_STATUS_CLEAN){
+					//Existing, we need to update
+					if(merge){
+						model = merge(model, getExisting(db, id));
+					}
+					bindUpdate(updateStatement, model, milis);
+					DBUtil.executeUpdateDelete(db, updateStatement);
+					result.updated++;
+				} else {
+					//MAYBE CONFLICT, we keep local one that will ovewrite server one
+					result.skipped++;
+				}
+			}
+
+			//check for models to delete: the ones deleted on the server (not received in this download)
+			String whereClause = COLUMN_NAME_DIRTY + " != "+ ISynchLocalDataSource.DIRTY_STATUS_CREATED + " AND "+ COLUMN_NAME_ID + " NOT IN (SELECT "+COLUMN_NAME_ID+" FROM "+CACHED_IDS_TABLE+")";
+			//TODO if its dirty_update it is a conflict!
+			db.delete(getTableName(), whereClause, null);
+			db.execSQL(CLEAR_CACHED_IDS);
+			db.setTransactionSuccessful();
+		} finally {
+			if(insertStatement!=null)
+				insertStatement.close();
+			if(updateStatement!=null)
+				updateStatement.close();
+			if(cachedIdStatement!=null)
+				cachedIdStatement.close();
+			db.endTransaction();
+			tableModified(db);
+			ModelCache<T> cache = modelCache;
+			if(cache!=null)
+				cache.clear(DbExecutor.isBatchTransaction());
+			ModelCache.invalidateDependents(modelClass, DbExecutor.isBatchTransaction());
+		}
 		close(db);
+		return result;
 	}
-	
+
 	/**
-	 * Given a list of models it returns its ids in the format ["id1", "id2", ...]
-	 * @param models
-	 * @return
+	 * @return map with the dirty status of each stored model, by id
 	 */
-	private String getIdList(List<T> models) {
-		StringBuilder ids = new StringBuilder();
-		ids.append("(");
-		boolean first = true;
-		for(T model: models){
-			if(!first){
-				ids.append(",");
+	protected Map<String, Integer> getDirtyStates(SQLiteDatabase db){
+		Map<String, Integer> result = new HashMap<String, Integer>();
+		Cursor cursor = db.query(getTableName(), new String[]{COLUMN_NAME_ID, COLUMN_NAME_DIRTY}, null, null, null, null, null);
+		while(cursor.moveToNext()){
+			result.put(cursor.getString(0), cursor.getInt(1));
+		}
+		cursor.close();
+		return result;
+	}
+
+	private T getExisting(SQLiteDatabase db, String id){
+		Cursor cursor = getCursorForId(db, id);
+		T existing = cursor.moveToNext() ? createModel(db, cursor, false) : null;
+		cursor.close();
+		return existing;
+	}
+
+	/**
+	 * Update statement used by cacheAll: model attributes, updated_at and id (where).
+	 * Null values keep the stored one, as done when updating with ContentValues.
+	 */
+	protected synchronized String getCacheUpdateSql(){
+		if(cacheUpdateSql==null){
+			StringBuilder builder = new StringBuilder();
+			builder.append("UPDATE ").append(getTableName()).append(" SET ");
+			for(String column: mapper.getModelAttributesForProjection()){
+				builder.append(column).append(" = COALESCE(?, ").append(column).append(")").append(DBUtil.COMMA_SEP);
 			}
-			first = false;
-			ids.append("\""+model.getId()+"\"");
+			builder.append(COLUMN_UPDATED_AT).append(" = ? WHERE ").append(WHERE_ID_SELECTION);
+			cacheUpdateSql = builder.toString();
 		}
-		ids.append(")");
-		return ids.toString();
+		return cacheUpdateSql;
 	}
 
+	/**
+	 * The hidratation of the existing model is only needed when merge has been overwritten.
+	 */
+	private synchronized boolean isMergeOverridden(){
+		if(mergeOverridden==null){
+			mergeOverridden = false;
+			for(Class<?> clazz = getClass(); clazz!=DBModelController.class; clazz = clazz.getSuperclass()){
+				for(Method method: clazz.getDeclaredMethods()){
+					if(method.getName().equals("merge") && method.getParameterTypes().length==2){
+						mergeOverridden = true;
+					}
+				}
+			}
+		}
+		return mergeOverridden;
+	}
+
+	/**
+	 * Result of a cacheAll operation
+	 */
+	public static class CacheResult{
+		int inserted;
+		int updated;
+		int skipped;
+
+		public int getInserted() {
+			return inserted;
+		}
+		public int getUpdated() {
+			return updated;
+		}
+		public int getSkipped() {
+			return skipped;
+		}
+		@Override
+		public String toString() {
+			return "inserted: "+inserted+", updated: "+updated+", skipped: "+skipped;
+		}
+	}
+	
 	private static final int OP_CREATE = 1;
 	private static final int OP_UPDATE = 2;
-	private static final int OP_CACHE = 3;
 	private void save(SQLiteDatabase db, T model, int op){
-		ContentValues values = new ContentValues();
-		
-		
 		long milis = System.currentTimeMillis();
 		if(op==OP_CREATE){
 			//create
 			if(model.getId()==null)
 				model.setId(createUUID());
-			mapper.addModelContentValues(model, values);
-			values.put(COLUMN_NAME_DIRTY, ISynchLocalDataSource.DIRTY_STATUS_CREATED);
-			values.put(COLUMN_NAME_ID, model.getId());
-			values.put(COLUMN_CREATED_AT, milis);
-			values.put(COLUMN_UPDATED_AT, milis);
-			db.insertOrThrow(getTableName(), null, values);
-		} else if(op == OP_CACHE) {
-			Cursor cursor = getCursorForId(db, model.getId());
-			if(cursor.moveToNext()){
-				//Existing, we need to update
-				T existing = createModel(db, cursor, false);
-				int dirtyStatus = CursorUtil.getInt(cursor, COLUMN_NAME_DIRTY);
-				if(dirtyStatus == ISynchLocalDataSource.DIRTY_STATUS_CLEAN){
-					model = merge(model, existing);
-					mapper.addModelContentValues(model, values);
-					values.put(COLUMN_UPDATED_AT, milis);
-					db.update(getTableName(), values, WHERE_ID_SELECTION, new String[]{model.getId()});
-				} else {
-					//MAYBE CONFLICT, we keep local one that will ovewrite server one
-				}
-			} else {
-				//Not stored
-				if(deletedEntries!=null && !deletedEntries.isDeleted(model.getId())){
-					//If deleted on the local database we don't want to get it back
-					mapper.addModelContentValues(model, values);
-					values.put(COLUMN_NAME_DIRTY, ISynchLocalDataSource.DIRTY_STATUS_CLEAN);
-					values.put(COLUMN_NAME_ID, model.getId());
-					values.put(COLUMN_CREATED_AT, milis);
-					values.put(COLUMN_UPDATED_AT, milis);
-					db.insertOrThrow(getTableName(), null, values);
+			executeInsert(db, model, ISynchLocalDataSource.DIRTY_STATUS_CREATED, milis);
+		} else { //OP_UPDATE
+			//The dirty status is set by the update statement (see getUpdateSql)
+			executeUpdate(db, getUpdateSql(), model, milis);
+		}
+	}
+
+	private void executeUpdate(SQLiteDatabase db, String sql, T model, long milis){
+		SQLiteStatement statement = statementCache.acquire(db, sql);
+		try {
+			bindUpdate(statement, model, milis);
+			DBUtil.executeUpdateDelete(db, statement);
+		} finally {
+			statementCache.release(statement);
+		}
+	}
+
+	private void executeInsert(SQLiteDatabase db, T model, int dirtyStatus, long milis){
+		SQLiteStatement statement = statementCache.acquire(db, getInsertSql());
+		try {
+			bindInsert(statement, model, dirtyStatus, milis);
+			statement.executeInsert();
+		} finally {
+			statementCache.release(statement);
+		}
+	}
+
+	/**
+	 * Binds the insert columns (see getInsertColumns)
+	 */
+	private void bindInsert(SQLiteStatement statement, T model, int dirtyStatus, long milis){
+		statement.bindString(1, model.getId());
+		statement.bindLong(2, dirtyStatus);
+		statement.bindLong(3, milis);
+		statement.bindLong(4, milis);
+		bindModelValues(statement, model, 5);
+	}
+
+	/**
+	 * Binds the model attributes followed by the update time and the id (see getUpdateSql and getCacheUpdateSql)
+	 */
+	private void bindUpdate(SQLiteStatement statement, T model, long milis){
+		int index = bindModelValues(statement, model, 1);
+		statement.bindLong(index, milis);
+		statement.bindString(index + 1, model.getId());
+	}
+
+	/**
+	 * Binds the model attributes (getModelAttributesForProjection) directly when the mapping supports it, or through
+	 * ContentValues (missing values as null)
+	 * @return index following the last attribute
+	 */
+	private int bindModelValues(SQLiteStatement statement, T model, int firstIndex){
+		if(mapper instanceof ReflectionDbMapping)
+			return ((ReflectionDbMapping<T>) mapper).bindModelValues(model, statement, firstIndex);
+		ContentValues values = new ContentValues();
+		mapper.addModelContentValues(model, values);
+		String[] columns = mapper.getModelAttributesForProjection();
+		for(int i=0; i<columns.length; ++i){
+			DBUtil.bind(statement, firstIndex + i, values.get(columns[i]));
+		}
+		return firstIndex + columns.length;
+	}
+
+	/**
+	 * Executes an update or delete statement through the statement cache
+	 * @return number of rows changed
+	 */
+	private int executeUpdateDelete(SQLiteDatabase db, String sql, Object... args){
+		SQLiteStatement statement = statementCache.acquire(db, sql);
+		try {
+			bind(statement, args);
+			return DBUtil.executeUpdateDelete(db, statement);
+		} finally {
+			statementCache.release(statement);
+		}
+	}
+
+	/**
+	 * Executes a query returning a single number through the statement cache
+	 * @throws SQLiteDoneException if the query returns no rows
+	 */
+	private long simpleQueryForLong(SQLiteDatabase db, String sql, Object... args){
+		SQLiteStatement statement = statementCache.acquire(db, sql);
+		try {
+			bind(statement, args);
+			return statement.simpleQueryForLong();
+		} finally {
+			statementCache.release(statement);
+		}
+	}
+
+	/**
+	 * Same as db.rawQuery, but the arguments are bound with their type (see DBUtil.bind) instead of as text
+	 */
+	@SuppressWarnings("deprecation")
+	protected Cursor rawQuery(SQLiteDatabase db, String sql, final Object[] args){
+		return db.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+			@Override
+			public Cursor newCursor(SQLiteDatabase database, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
+				for(int i=0; i<args.length; ++i){
+					DBUtil.bind(query, i+1, args[i]);
 				}
+				//The constructor without db needs API 11
+				return new SQLiteCursor(database, masterQuery, editTable, query);
 			}
-			cursor.close();
-		} else { //OP_UPDATE
-			Cursor cursor = getCursorForId(db, model.getId());
-			cursor.moveToNext();
-			int dirtyStatus = CursorUtil.getInt(cursor, COLUMN_NAME_DIRTY);
-			cursor.close();
-			if(dirtyStatus!= ISynchLocalDataSource.DIRTY_STATUS_CREATED)
-				values.put(COLUMN_NAME_DIRTY, ISynchLocalDataSource.DIRTY_STATUS_UPDATED);
-			mapper.addModelContentValues(model, values);
-			values.put(COLUMN_UPDATED_AT, milis);
-			db.update(getTableName(), values, WHERE_ID_SELECTION, new String[]{model.getId()});
+		}, sql, null, null);
+	}
+
+	private static void bind(SQLiteStatement statement, Object[] args){
+		if(args==null)
+			return;
+		for(int i=0; i<args.length; ++i){
+			DBUtil.bind(statement, i+1, args[i]);
+		}
+	}
+
+	/**
+	 * Update statement used by update: model attributes, updated_at and id (where).
+	 * As in getCacheUpdateSql, null values keep the stored one. Rows not sent to the server yet (created) keep their
+	 * dirty status, the others are marked as updated.
+	 */
+	protected synchronized String getUpdateSql(){
+		if(updateSql==null){
+			StringBuilder builder = new StringBuilder();
+			builder.append("UPDATE ").append(getTableName()).append(" SET ");
+			for(String column: mapper.getModelAttributesForProjection()){
+				builder.append(column).append(" = COALESCE(?, ").append(column).append(")").append(DBUtil.COMMA_SEP);
+			}
+			builder.append(COLUMN_NAME_DIRTY).append(" = CASE WHEN ").append(COLUMN_NAME_DIRTY).append(" == ").append(ISynchLocalDataSource.DIRTY_STATUS_CREATED)
+					.append(" THEN ").append(COLUMN_NAME_DIRTY).append(" ELSE ").append(ISynchLocalDataSource.DIRTY_STATUS_UPDATED).append(" END").append(DBUtil.COMMA_SEP);
+			builder.append(COLUMN_UPDATED_AT).append(" = ? WHERE ").append(WHERE_ID_SELECTION);
+			updateSql = builder.toString();
 		}
+		return updateSql;
+	}
+
+	private String getDeleteSql(){
+		return "DELETE FROM " + getTableName() + " WHERE " + WHERE_ID_SELECTION;
 	}
 	
 	public void markAsClean(T model){
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
-		ContentValues values = new ContentValues();
-		values.put(COLUMN_NAME_DIRTY, ISynchLocalDataSource.DIRTY_STATUS_CLEAN);
-		db.update(getTableName(), values, WHERE_ID_SELECTION, new String[]{model.getId()});
+		executeUpdateDelete(db, "UPDATE " + getTableName() + " SET " + COLUMN_NAME_DIRTY + " = " + ISynchLocalDataSource.DIRTY_STATUS_CLEAN + " WHERE " + WHERE_ID_SELECTION, model.getId());
+		tableModified(db);
 		close(db);
 	}
 	
@@ -411,17 +1142,31 @@ public class DBModelController<T extends IdentificableModel> {
 	 * @return
 	 */
 	protected Cursor getCursor(SQLiteDatabase db, String selection, String[] selectionArgs, String orderBy) {
+		return getCursor(db, selection, selectionArgs, orderBy, null);
+	}
+
+	/**
+	 * @param limit as defined in db.query, may be null
+	 */
+	protected Cursor getCursor(SQLiteDatabase db, String selection, String[] selectionArgs, String orderBy, String limit) {
 		// Define a projection that specifies which columns from the database
 		// you will actually use after this query.
 		String[] projection = merge(new String[]{COLUMN_NAME_ID}, mapper.getModelAttributesForProjection());
+		return getCursor(db, projection, selection, selectionArgs, orderBy, limit);
+	}
 
+	/**
+	 * @param projection columns to return, as defined in db.query
+	 */
+	protected Cursor getCursor(SQLiteDatabase db, String[] projection, String selection, String[] selectionArgs, String orderBy, String limit) {
 		Cursor cursor = db.query(getTableName(), // The table to query
 				projection, // The columns to return
 				selection, // The columns for the WHERE clause
 				selectionArgs, // The values for the WHERE clause
 				null, // don't group the rows
 				null, // don't filter by row groups
-				orderBy // The sort order
+				orderBy, // The sort order
+				limit
 				);
 		return cursor;
 	}
@@ -443,34 +1188,21 @@ public class DBModelController<T extends IdentificableModel> {
 	
 	protected void setColumnValue(String id, String columnName, Object value){
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
-		ContentValues values = new ContentValues();
-		if(value instanceof String)
-			values.put(columnName, (String)value);
-		else if (value instanceof Integer)
-			values.put(columnName, (Integer)value);
-		else if (value instanceof Double)
-			values.put(columnName, (Double)value);
-		else //if (value instanceof Boolean)
-			values.put(columnName, (Boolean)value);
-		
-		String selection = COLUMN_NAME_ID + " = ?";
-		db.update(getTableName(), values, selection, new String[]{id});
+		executeUpdateDelete(db, "UPDATE " + getTableName() + " SET " + columnName + " = ? WHERE " + WHERE_ID_SELECTION, value, id);
+		tableModified(db);
+		invalidateCache(db, id);
 		close(db);
 	}
 	
 	protected int getColumnIntegerValue(String id, String columnName) {
-		String selection = WHERE_ID_SELECTION;
-		String[] selectionArgs = { id };
-
 		SQLiteDatabase db = dbHelper.getReadableDatabase();
-		Cursor cursor = getCursor(db, selection, selectionArgs, null);
-
-		if (!cursor.moveToFirst()) {
+		int value;
+		try {
+			value = (int) simpleQueryForLong(db, "SELECT " + columnName + " FROM " + getTableName() + " WHERE " + WHERE_ID_SELECTION, id);
+		} catch (SQLiteDoneException e) {
 			// not present
-			return 0;
+			value = 0;
 		}
-		int value = cursor.getInt(cursor.getColumnIndex(columnName));
-		cursor.close();
 		close(db);
 		
 		return value;
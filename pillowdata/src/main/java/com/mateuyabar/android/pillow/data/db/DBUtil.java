@@ -20,13 +20,19 @@ package com.mateuyabar.android.pillow.data.db;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
+import com.mateuyabar.android.pillow.data.db.java2db.DateTimeCodec;
 import com.mateuyabar.util.StringUtil;
 import com.mateuyabar.util.exceptions.UnimplementedException;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 public class DBUtil {
@@ -43,8 +49,107 @@ public class DBUtil {
 	public static final String CALENDAR_TYPE = "  TEXT";
 	public static final String DATE_TYPE = "  TEXT";
 	public static final String ENUM_TYPE = "  INTEGER";
+	private static final String OLD_TABLE_SUFFIX = "_pillow_old";
+
+	/**
+	 * If true Date and Calendar values are stored as epoch milliseconds (INTEGER) instead of DATE_TIME_STRING_FORMAT text.
+	 * Set from PillowConfigXml (dbDatesAsMillis) before the database is opened.
+	 */
+	static volatile boolean datesAsMillis = false;
+
+	public static boolean isDatesAsMillis() {
+		return datesAsMillis;
+	}
+
+	public static void setDatesAsMillis(boolean datesAsMillis) {
+		DBUtil.datesAsMillis = datesAsMillis;
+	}
+
+	/**
+	 * @return the column type of Date and Calendar values
+	 */
+	public static String getDateType() {
+		return datesAsMillis ? LONG_TYPE : DATE_TYPE;
+	}
 	
 	
+	/**
+	 * @param columns comma separated columns (may include COLLATE)
+	 */
+	public static String createIndex(String table, String indexName, String columns){
+		return "CREATE INDEX IF NOT EXISTS " + indexName + " ON " + table + " (" + columns + ");";
+	}
+
+	public static boolean existsTable(SQLiteDatabase db, String table){
+		return existsInSchema(db, "table", table);
+	}
+
+	/**
+	 * @param type type of sqlite_master: table, index or trigger
+	 */
+	public static boolean existsInSchema(SQLiteDatabase db, String type, String name){
+		Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = ? AND name = ?", new String[]{type, name});
+		try {
+			return cursor.moveToNext();
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * @return column name to declared type, empty if the table does not exist
+	 */
+	public static Map<String, String> getColumnTypes(SQLiteDatabase db, String table){
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		Cursor cursor = db.rawQuery("PRAGMA table_info("+table+")", null);
+		try {
+			int nameIndex = cursor.getColumnIndex("name");
+			int typeIndex = cursor.getColumnIndex("type");
+			while(cursor.moveToNext()){
+				result.put(cursor.getString(nameIndex), cursor.getString(typeIndex));
+			}
+		} finally {
+			cursor.close();
+		}
+		return result;
+	}
+
+	/**
+	 * @param trigger CREATE TRIGGER name ... statement
+	 */
+	public static String getTriggerName(String trigger){
+		return trigger.trim().split("\\s+")[2];
+	}
+
+	/**
+	 * Recreates the table of the mapping with the current columns, copying the rows of the columns that already
+	 * existed. The triggers defined on the table are dropped.
+	 * @param columnExpressions expressions on the old row used instead of the old value, by column (may be empty)
+	 */
+	public static void rebuildTable(SQLiteDatabase db, IDbMapping<?> mapping, Map<String, String> columnExpressions){
+		String table = mapping.getTableName();
+		String oldTable = table + OLD_TABLE_SUFFIX;
+		Set<String> oldColumns = getColumnTypes(db, table).keySet();
+		db.execSQL("ALTER TABLE "+table+" RENAME TO "+oldTable);
+		db.execSQL(createTable(mapping));
+
+		StringBuilder columns = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+		for(String column: getColumnTypes(db, table).keySet()){
+			if(!oldColumns.contains(column))
+				continue;
+			if(columns.length()>0){
+				columns.append(COMMA_SEP);
+				values.append(COMMA_SEP);
+			}
+			columns.append(column);
+			String expression = columnExpressions.get(column);
+			values.append(expression!=null ? expression : column);
+		}
+		db.execSQL("INSERT INTO "+table+" ("+columns+") SELECT "+values+" FROM "+oldTable);
+		db.execSQL("DROP TABLE "+oldTable);
+	}
+
 	public static String createTable(IDbMapping<?> mapping){
 		StringBuilder sqlBuilder = new StringBuilder();
 		sqlBuilder.append("CREATE TABLE " + mapping.getTableName());
@@ -71,6 +176,41 @@ public class DBUtil {
 		return "";
 	}
 
+	/**
+	 * @return "?,?,...,?" with count parameters, to be used in IN clauses
+	 */
+	public static String createPlaceholders(int count){
+		StringBuilder builder = new StringBuilder(count*2);
+		for(int i=0; i<count; ++i){
+			if(i>0)
+				builder.append(COMMA_SEP);
+			builder.append('?');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Creates an insert statement with one parameter per column, in the same order as columns
+	 * @param table
+	 * @param columns
+	 * @return sql to be compiled
+	 */
+	public static String createInsert(String table, String[] columns){
+		StringBuilder sqlBuilder = new StringBuilder();
+		sqlBuilder.append("INSERT INTO ").append(table).append(" (");
+		StringBuilder valuesBuilder = new StringBuilder();
+		for(int i=0; i<columns.length; ++i){
+			if(i>0){
+				sqlBuilder.append(COMMA_SEP);
+				valuesBuilder.append(COMMA_SEP);
+			}
+			sqlBuilder.append(columns[i]);
+			valuesBuilder.append("?");
+		}
+		sqlBuilder.append(") VALUES (").append(valuesBuilder).append(")");
+		return sqlBuilder.toString();
+	}
+
 	public static String dropTable(IDbMapping<?> mapping){
 		return "DROP TABLE IF EXISTS "+mapping.getTableName();
 	}
@@ -153,9 +293,7 @@ public class DBUtil {
 //	}
 ////
 	public static String dateTimeToDb(Date date){
-		if(date==null) return null;
-		SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_TIME_STRING_FORMAT);
-		return dateFormat.format(date);
+		return DateTimeCodec.format(date);
 
 //		if(date==null) return null;
 //		SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_TIME_STRING_FORMAT);
@@ -163,14 +301,7 @@ public class DBUtil {
 	}
 ////
 	public static Date dbToDateTime(String date){
-		if(date==null) return null;
-		SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_TIME_STRING_FORMAT);
-		try {
-			return dateFormat.parse(date);
-		} catch (ParseException e) {
-			e.printStackTrace();
-			return null;
-		}
+		return DateTimeCodec.parse(date);
 	}
 //
 //	public static Integer enumToDb(Enum<?> value){
@@ -216,6 +347,60 @@ public class DBUtil {
 //        return value;
 //    }
 
+    /**
+     * SQLiteStatement.executeUpdateDelete, that is not available before API 11. On older versions the statement is
+     * executed and the changed rows are read with changes() (there is a single connection).
+     * @return number of rows changed
+     */
+    public static int executeUpdateDelete(SQLiteDatabase db, SQLiteStatement statement) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
+            return statement.executeUpdateDelete();
+        statement.execute();
+        SQLiteStatement changes = db.compileStatement("SELECT changes()");
+        try {
+            return (int) changes.simpleQueryForLong();
+        } finally {
+            changes.close();
+        }
+    }
+
+    /**
+     * Binds the values of the given columns (in order) to a compiled statement, starting at index 1.
+     * Columns not present in values are bound to null.
+     * @param statement
+     * @param columns
+     * @param values
+     */
+    public static void bind(SQLiteProgram statement, String[] columns, ContentValues values) {
+        for(int i=0; i<columns.length; ++i){
+            bind(statement, i+1, values.get(columns[i]));
+        }
+    }
+
+    /**
+     * Helper method to bind a value of type Object (as stored in ContentValues) to a compiled statement.
+     * @param statement
+     * @param index 1 based index of the parameter
+     * @param value
+     */
+    public static void bind(SQLiteProgram statement, int index, Object value) {
+        if(value==null)
+            statement.bindNull(index);
+        else if(value instanceof String)
+            statement.bindString(index, (String) value);
+        else if(value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long)
+            statement.bindLong(index, ((Number) value).longValue());
+        else if(value instanceof Float || value instanceof Double)
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        else if(value instanceof Boolean)
+            statement.bindLong(index, ((Boolean) value) ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+        else if(value instanceof byte[])
+            statement.bindBlob(index, (byte[]) value);
+        else  {
+            throw new UnimplementedException("can't bind value of type" + value.getClass());
+        }
+    }
+
     /**
      * Helper method to allow to put a value of type Object to ContentValues. It also allows to store complex methods (like embeddable models)
      * @param values
@@ -235,6 +420,8 @@ public class DBUtil {
             values.put(key, (Integer) value);
         else if(value instanceof Long)
             values.put(key, (Long) value);
+        else if(value instanceof Float)
+            values.put(key, (Float) value);
         else if(value instanceof Double)
             values.put(key, (Double) value);
         else if(value instanceof Boolean)
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.mateuyabar.android.pillow.Pillow;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts the date columns of an existing database from DBUtil.DATE_TIME_STRING_FORMAT text to epoch milliseconds,
+ * used when DBUtil.isDatesAsMillis() is enabled.
+ * The Date and Calendar columns of the mappings (IDbMapping.getDateColumns) still declared TEXT are converted. SQLite
+ * keeps the declared affinity of a column, so the affected tables are rebuilt. Values not in the date format are
+ * copied unchanged.
+ */
+public class DateColumnsMigration {
+	public static final String LOG_ID = Pillow.LOG_ID + " - DateColumnsMigration";
+	/**
+	 * Matches DBUtil.DATE_TIME_STRING_FORMAT values
+	 */
+	private static final String DATE_TIME_GLOB = "[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9] [0-9][0-9]:[0-9][0-9]:[0-9][0-9]";
+
+	public static void migrate(SQLiteDatabase db, List<IDbMapping<?>> mappings){
+		Map<IDbMapping<?>, Set<String>> tablesToMigrate = new LinkedHashMap<IDbMapping<?>, Set<String>>();
+		for(IDbMapping<?> mapping: mappings){
+			Map<String, String> columnTypes = DBUtil.getColumnTypes(db, mapping.getTableName());
+			Set<String> dateColumns = new HashSet<String>();
+			for(String column: mapping.getDateColumns()){
+				if("TEXT".equalsIgnoreCase(columnTypes.get(column)))
+					dateColumns.add(column);
+			}
+			if(!dateColumns.isEmpty())
+				tablesToMigrate.put(mapping, dateColumns);
+		}
+		if(tablesToMigrate.isEmpty())
+			return;
+
+		db.beginTransaction();
+		try {
+			//Triggers are recreated as rebuilding a table drops the ones defined on it
+			for(IDbMapping<?> mapping: mappings){
+				for(String trigger: mapping.getTriggers()){
+					db.execSQL("DROP TRIGGER IF EXISTS "+DBUtil.getTriggerName(trigger));
+				}
+			}
+			for(Map.Entry<IDbMapping<?>, Set<String>> entry: tablesToMigrate.entrySet()){
+				Log.d(LOG_ID, "converting dates to millis in "+entry.getKey().getTableName()+": "+entry.getValue());
+				rebuildTable(db, entry.getKey(), entry.getValue());
+			}
+			for(IDbMapping<?> mapping: mappings){
+				for(String trigger: mapping.getTriggers()){
+					db.execSQL(trigger);
+				}
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	private static void rebuildTable(SQLiteDatabase db, IDbMapping<?> mapping, Set<String> dateColumns){
+		Map<String, String> expressions = new HashMap<String, String>();
+		for(String column: dateColumns){
+			//stored text is local time
+			expressions.put(column, "CASE WHEN "+column+" GLOB '"+DATE_TIME_GLOB+"' THEN CAST(strftime('%s', "+column+", 'utc') AS INTEGER) * 1000 ELSE "+column+" END");
+		}
+		DBUtil.rebuildTable(db, mapping, expressions);
+	}
+}
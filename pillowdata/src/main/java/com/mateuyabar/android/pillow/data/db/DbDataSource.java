@@ -21,6 +21,7 @@ package com.mateuyabar.android.pillow.data.db;
 import android.content.Context;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
 
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.Pillow;
@@ -28,16 +29,23 @@ import com.mateuyabar.android.pillow.PillowError;
 import com.mateuyabar.android.pillow.data.core.IPillowResult;
 import com.mateuyabar.android.pillow.data.core.PillowResult;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 
 public class DbDataSource<T extends IdentificableModel> implements ISynchLocalDbDataSource<T> {
+	public static final String LOG_ID = Pillow.LOG_ID + " - DbDataSource";
 	SQLiteOpenHelper dbHelper;
 	IDbMapping<T> dbMapping;
 	DBModelController<T> dbModelController;
 	Context context;
 	Class<T> modelClass;
+	/**
+	 * If true create, update and setAsNotDirty read the stored model after writing it
+	 */
+	boolean readAfterWrite = true;
 
 	public DbDataSource(Class<T> modelClass, Context context, IDbMapping<T> dbMapping) {
 		this.modelClass = modelClass;
@@ -66,6 +74,78 @@ public class DbDataSource<T extends IdentificableModel> implements ISynchLocalDb
 		return new PillowResult<Collection<T>>(db.index(selection, selectionArgs, order));
 	}
 
+	@Override
+	public IPillowResult<LazyModelList<T>> lazyIndex(String selection, String[] selectionArgs, String order) {
+		return new PillowResult<LazyModelList<T>>(getDbModelController().lazyIndex(selection, selectionArgs, order));
+	}
+
+	@Override
+	public IPillowResult<LazyModelList<T>> lazyIndex(T filter) {
+		return new PillowResult<LazyModelList<T>>(getDbModelController().lazyIndex(filter));
+	}
+
+	@Override
+	public IPillowResult<Page<T>> page(String selection, String[] selectionArgs, PageRequest request) {
+		return new PillowResult<Page<T>>(getDbModelController().page(selection, selectionArgs, request));
+	}
+
+	@Override
+	public IPillowResult<Page<T>> page(T filter, PageRequest request) {
+		return new PillowResult<Page<T>>(getDbModelController().page(filter, request));
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> projectedIndex(String[] fields, String selection, String[] selectionArgs, String order) {
+		return new PillowResult<Collection<T>>(getDbModelController().projectedIndex(fields, selection, selectionArgs, order));
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> projectedIndex(String[] fields, T filter) {
+		return new PillowResult<Collection<T>>(getDbModelController().projectedIndex(fields, filter));
+	}
+
+	@Override
+	public <V> IPillowResult<Collection<V>> projectedIndex(Class<V> viewClass, String selection, String[] selectionArgs, String order) {
+		return new PillowResult<Collection<V>>(getDbModelController().projectedIndex(viewClass, selection, selectionArgs, order));
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> search(String query, int limit) {
+		return new PillowResult<Collection<T>>(getDbModelController().search(query, limit));
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> search(String query, T filter, int limit) {
+		return new PillowResult<Collection<T>>(getDbModelController().search(query, filter, limit));
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> query(ModelQuery<T> query) {
+		return new PillowResult<Collection<T>>(getDbModelController().index(query));
+	}
+
+	@Override
+	public IPillowResult<Integer> count(ModelQuery<T> query) {
+		return new PillowResult<Integer>(getDbModelController().getCount(query));
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> indexIncluding(T filter, String... include) {
+		DBModelController<T> db = getDbModelController();
+		List<T> models = filter!=null ? db.index(filter) : db.index();
+		db.include(models, include);
+		return new PillowResult<Collection<T>>(models);
+	}
+
+	@Override
+	public IPillowResult<T> showIncluding(T model, String... include) {
+		DBModelController<T> db = getDbModelController();
+		T result = db.get(model.getId());
+		if(result!=null)
+			db.include(Collections.singletonList(result), include);
+		return new PillowResult<T>(result);
+	}
+
 	@Override
 	public IPillowResult<T> show(T model) {
 		DBModelController<T> db =getDbModelController();
@@ -73,12 +153,22 @@ public class DbDataSource<T extends IdentificableModel> implements ISynchLocalDb
 		return new PillowResult<T>( result);
 	}
 
+	@Override
+	public IPillowResult<List<T>> showAll(List<T> models) {
+		List<String> ids = new ArrayList<String>(models.size());
+		for(T model: models){
+			ids.add(model.getId());
+		}
+		return new PillowResult<List<T>>(getDbModelController().get(ids));
+	}
+
 	@Override
 	public IPillowResult<T> create(T model) {
 		try{
 			DBModelController<T> db = getDbModelController();
 			db.create(model);
-			model = db.get(model.getId());
+			if(readAfterWrite)
+				model = db.get(model.getId());
 			return new PillowResult<T>( model);
 		} catch (SQLiteException exception){
 			return new PillowResult<T>( new PillowError(exception));
@@ -91,7 +181,8 @@ public class DbDataSource<T extends IdentificableModel> implements ISynchLocalDb
 			DBModelController<T> dbController =getDbModelController();
 			dbController.update(model);
 			//refresh model
-			model = dbController.get(model.getId());
+			if(readAfterWrite)
+				model = dbController.get(model.getId());
 			return new PillowResult<T>(model);
 		} catch (SQLiteException exception){
 			return new PillowResult<T>(new PillowError(exception));
@@ -127,9 +218,19 @@ public class DbDataSource<T extends IdentificableModel> implements ISynchLocalDb
 	public IPillowResult<T> setAsNotDirty(T model){
 		DBModelController<T> db =getDbModelController();
 		db.markAsClean(model);
-		model = db.get(model.getId());
+		if(readAfterWrite)
+			model = db.get(model.getId());
 		return new PillowResult<T>(model);
 	}
+
+	/**
+	 * If false (true by default) create, update and setAsNotDirty return the given model instead of reading it back
+	 * from the database, so a local write is a single statement. The returned model then keeps the values given (an
+	 * update with null fields keeps the stored values on the database, but they are not copied to the model).
+	 */
+	public void setReadAfterWrite(boolean readAfterWrite) {
+		this.readAfterWrite = readAfterWrite;
+	}
 	
 	public DBModelController<T> getDbModelController(){
 		return dbModelController;
@@ -146,7 +247,8 @@ public class DbDataSource<T extends IdentificableModel> implements ISynchLocalDb
 
 	@Override
 	public void cacheAll(List<T> models) {
-		getDbModelController().cacheAll(models);
+		DBModelController.CacheResult result = getDbModelController().cacheAll(models);
+		Log.d(LOG_ID, "cached "+modelClass.getSimpleName()+" - "+result);
 	}
 
 	@Override
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.mateuyabar.android.pillow.Pillow;
+import com.mateuyabar.util.exceptions.BreakFastException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor of database operations: reads run on a pool of readerThreads threads and writes are serialized on a
+ * single writer thread.
+ * A read waits for the writes submitted before it (so it sees them), except the ones submitted with
+ * executeWriteAndWait (long operations like cacheAll), that reads do not wait for.
+ * Parallel reads only make sense with write ahead logging enabled, otherwise SQLite serializes them.
+ *
+ * Consecutive BatchableWrite operations are executed in a single transaction (group commit): up to batchSize
+ * operations, waiting at most batchLatency milliseconds for the next one. Their results are delivered after the commit.
+ * If any of them fails the transaction is rolled back and each operation is executed again on its own, so the results
+ * are the same as executing them one by one.
+ */
+public class DbExecutor {
+	public static final String LOG_ID = Pillow.LOG_ID + " - DbExecutor";
+	public static final int DEFAULT_READER_THREADS = 3;
+	public static final int DEFAULT_BATCH_SIZE = 50;
+	public static final int DEFAULT_BATCH_LATENCY = 0;
+
+	private static volatile DbExecutor instance = new DbExecutor(1, null, 1, 0);
+	/**
+	 * Set on the writer thread while a batch transaction is open
+	 */
+	private static final ThreadLocal<Boolean> batchTransaction = new ThreadLocal<Boolean>();
+	/**
+	 * Set on the writer threads
+	 */
+	private static final ThreadLocal<Boolean> writer = new ThreadLocal<Boolean>();
+
+	/**
+	 * Write operation that can be executed inside the transaction of a batch
+	 */
+	public interface BatchableWrite {
+		/**
+		 * Executes the operation, keeping its result
+		 * @return false if it failed (the batch is then rolled back and executed one by one)
+		 */
+		boolean execute();
+
+		/**
+		 * Delivers the result of the last execution
+		 */
+		void deliver();
+	}
+
+	private final ThreadPoolExecutor readers;
+	private final BlockingQueue<WriteTask> writes = new LinkedBlockingQueue<WriteTask>();
+	private final SQLiteOpenHelper dbHelper;
+	private final int batchSize;
+	private final int batchLatency;
+	private final Object writesLock = new Object();
+	private volatile Thread writerThread;
+	private long submittedWrites;
+	private long finishedWrites;
+
+	/**
+	 * @param dbHelper helper of the database used for batch transactions. If null writes are not batched
+	 * @param batchSize max number of write operations in a transaction
+	 * @param batchLatency max milliseconds waiting for another write before committing a batch
+	 */
+	public DbExecutor(int readerThreads, SQLiteOpenHelper dbHelper, int batchSize, int batchLatency) {
+		readers = new ThreadPoolExecutor(readerThreads, readerThreads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		readers.allowCoreThreadTimeOut(true);
+		this.dbHelper = dbHelper;
+		this.batchSize = dbHelper==null ? 1 : Math.max(1, batchSize);
+		this.batchLatency = batchLatency;
+	}
+
+	public static DbExecutor getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return if the current thread is executing the writes of a batch transaction, so the caches must be invalidated
+	 * again when it ends (see ModelCache.transactionEnded)
+	 */
+	public static boolean isBatchTransaction() {
+		return batchTransaction.get()!=null;
+	}
+
+	/**
+	 * @return if the current thread is the writer thread of an executor. Unlike the reader threads, it lives as long
+	 * as the application, so it can keep resources like compiled statements (see StatementCache).
+	 */
+	public static boolean isWriterThread() {
+		return writer.get()!=null;
+	}
+
+	/**
+	 * Replaces the executor used by the data sources (called on Pillow initialization)
+	 */
+	public static void setInstance(DbExecutor executor) {
+		instance = executor;
+	}
+
+	public void executeRead(final Runnable runnable) {
+		final long writesBefore;
+		synchronized (writesLock) {
+			writesBefore = submittedWrites;
+		}
+		readers.execute(new Runnable() {
+			@Override
+			public void run() {
+				awaitWrites(writesBefore);
+				runnable.run();
+			}
+		});
+	}
+
+	public void executeWrite(final Runnable runnable) {
+		executeWrite(new BatchableWrite() {
+			@Override
+			public boolean execute() {
+				runnable.run();
+				return true;
+			}
+
+			@Override
+			public void deliver() {
+			}
+		}, false);
+	}
+
+	/**
+	 * Executes the write on the writer thread, batched with the adjacent ones
+	 */
+	public void executeWrite(BatchableWrite write) {
+		executeWrite(write, true);
+	}
+
+	private void executeWrite(BatchableWrite write, boolean batchable) {
+		synchronized (writesLock) {
+			submittedWrites++;
+		}
+		enqueue(new WriteTask(write, batchable, true));
+	}
+
+	/**
+	 * Runs the write on the writer thread and waits until it finishes. Reads submitted meanwhile do not wait for it
+	 * and see the data previous to its transaction.
+	 */
+	public void executeWriteAndWait(final Runnable runnable) {
+		if (Thread.currentThread()==writerThread) {
+			runnable.run();
+			return;
+		}
+		final FutureTask<Void> task = new FutureTask<Void>(runnable, null);
+		enqueue(new WriteTask(new BatchableWrite() {
+			@Override
+			public boolean execute() {
+				task.run();
+				return true;
+			}
+
+			@Override
+			public void deliver() {
+			}
+		}, false, false));
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BreakFastException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new BreakFastException(e.getCause());
+		}
+	}
+
+	private synchronized void enqueue(WriteTask task) {
+		if (writerThread==null) {
+			writerThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					runWrites();
+				}
+			}, "pillow-db-writer");
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+		writes.add(task);
+	}
+
+	private void runWrites() {
+		writer.set(Boolean.TRUE);
+		List<WriteTask> batch = new ArrayList<WriteTask>();
+		WriteTask next = null;
+		while (true) {
+			try {
+				WriteTask first = next!=null ? next : writes.take();
+				next = null;
+				if (!first.batchable || batchSize==1) {
+					runAlone(first);
+					continue;
+				}
+				batch.add(first);
+				while (batch.size()<batchSize) {
+					WriteTask task = batchLatency>0 ? writes.poll(batchLatency, TimeUnit.MILLISECONDS) : writes.poll();
+					if (task==null)
+						break;
+					if (!task.batchable) {
+						next = task;
+						break;
+					}
+					batch.add(task);
+				}
+				runBatch(batch);
+				batch.clear();
+			} catch (InterruptedException e) {
+				//The writer thread is never interrupted on purpose, keep running
+			}
+		}
+	}
+
+	private void runBatch(List<WriteTask> batch) {
+		if (batch.size()==1) {
+			runAlone(batch.get(0));
+			return;
+		}
+		boolean success = true;
+		SQLiteDatabase db = dbHelper.getWritableDatabase();
+		db.beginTransaction();
+		batchTransaction.set(Boolean.TRUE);
+		try {
+			for (WriteTask task : batch) {
+				if (!task.write.execute()) {
+					success = false;
+					break;
+				}
+			}
+			if (success)
+				db.setTransactionSuccessful();
+		} catch (RuntimeException e) {
+			success = false;
+		} finally {
+			try {
+				db.endTransaction();
+			} catch (RuntimeException e) {
+				success = false;
+			}
+			batchTransaction.remove();
+			ModelCache.transactionEnded();
+			TableVersions.transactionEnded();
+		}
+
+		if (success) {
+			for (WriteTask task : batch) {
+				deliver(task);
+			}
+		} else {
+			Log.d(LOG_ID, "batch of "+batch.size()+" writes failed, executing them one by one");
+			for (WriteTask task : batch) {
+				runAlone(task);
+			}
+		}
+	}
+
+	private void runAlone(WriteTask task) {
+		try {
+			task.write.execute();
+		} catch (RuntimeException e) {
+			Log.e(LOG_ID, "error executing db write", e);
+		}
+		deliver(task);
+	}
+
+	private void deliver(WriteTask task) {
+		try {
+			task.write.deliver();
+		} catch (RuntimeException e) {
+			Log.e(LOG_ID, "error delivering db write result", e);
+		} finally {
+			if (task.counted) {
+				synchronized (writesLock) {
+					finishedWrites++;
+					writesLock.notifyAll();
+				}
+			}
+		}
+	}
+
+	private void awaitWrites(long writes) {
+		synchronized (writesLock) {
+			while (finishedWrites < writes) {
+				try {
+					writesLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private static class WriteTask {
+		final BatchableWrite write;
+		final boolean batchable;
+		/**
+		 * If reads submitted after it must wait for it
+		 */
+		final boolean counted;
+
+		WriteTask(BatchableWrite write, boolean batchable, boolean counted) {
+			this.write = write;
+			this.batchable = batchable;
+			this.counted = counted;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+import com.mateuyabar.util.exceptions.BreakFastException;
+
+/**
+ * Access to the IDbMappings generated at compile time by pillowprocessor for the models annotated with GenerateDbMapping.
+ * The generated mapping of pkg.Model (or pkg.Outer$Model) is pkg.Model_PillowDbMapping (or pkg.Outer_Model_PillowDbMapping).
+ */
+public class GeneratedDbMappings {
+	/**
+	 * Must match the suffix used by pillowprocessor
+	 */
+	public static final String SUFFIX = "_PillowDbMapping";
+
+	public static String getGeneratedClassName(Class<?> modelClass){
+		return modelClass.getName().replace('$', '_') + SUFFIX;
+	}
+
+	/**
+	 * @return the generated mapping of the model class, or null if it was not generated
+	 */
+	public static <T extends IdentificableModel> IDbMapping<T> create(Class<T> modelClass){
+		Class<?> mappingClass;
+		try {
+			mappingClass = Class.forName(getGeneratedClassName(modelClass), true, modelClass.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+		try {
+			return (IDbMapping<T>) mappingClass.newInstance();
+		} catch (Exception e) {
+			throw new BreakFastException(e);
+		}
+	}
+}
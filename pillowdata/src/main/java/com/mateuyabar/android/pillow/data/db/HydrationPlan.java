@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.Cursor;
+
+import com.mateuyabar.android.pillow.data.db.java2db.Java2DbManager;
+import com.mateuyabar.android.pillow.data.db.java2db.Java2DbType;
+import com.mateuyabar.android.pillow.data.db.java2db.PrimitiveCodec;
+import com.mateuyabar.android.pillow.util.reflection.ReflectionUtil;
+import com.mateuyabar.util.exceptions.BreakFastException;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precomputed way of filling a model class from cursors with a given projection.
+ * Column indexes, accessible fields and value readers are resolved once, so filling a row does no name lookups.
+ * Fields whose column is not in the projection are left untouched. Numeric and boolean fields are set with their
+ * PrimitiveCodec, without boxing primitive values.
+ */
+class HydrationPlan {
+	private static final int KIND_STRING = 0;
+	private static final int KIND_PRIMITIVE = 1;
+	private static final int KIND_CONVERTER = 2;
+	private static final int KIND_EMBEDDED = 3;
+
+	final Class<?> modelClass;
+	final FieldReader[] readers;
+
+	private HydrationPlan(Class<?> modelClass, FieldReader[] readers) {
+		this.modelClass = modelClass;
+		this.readers = readers;
+	}
+
+	/**
+	 * @param prefix prefix of the column names (used for embedded models)
+	 */
+	static HydrationPlan create(Class<?> modelClass, String prefix, Cursor cursor, Java2DbManager java2DbManager) {
+		List<FieldReader> readers = new ArrayList<FieldReader>();
+		for (Field field : ReflectionUtil.getStoredFields(modelClass)) {
+			String columnName = prefix + field.getName();
+			Class<?> fieldClass = field.getType();
+			FieldReader reader = new FieldReader(field, fieldClass);
+			if (String.class.isAssignableFrom(fieldClass)) {
+				reader.kind = KIND_STRING;
+			} else if ((reader.codec = PrimitiveCodec.get(fieldClass)) != null) {
+				reader.kind = KIND_PRIMITIVE;
+			} else if (ReflectionUtil.isEmbeddable(fieldClass)) {
+				reader.kind = KIND_EMBEDDED;
+				reader.embedded = create(fieldClass, columnName + ReflectionDbMapping.EMBEDDED_MODEL_ATTRIBUTE_SEPARATOR, cursor, java2DbManager);
+			} else {
+				reader.kind = KIND_CONVERTER;
+				reader.converter = java2DbManager.get(fieldClass);
+				if (reader.converter == null)
+					throw new UnsupportedOperationException(fieldClass.toString());
+			}
+			if (reader.kind != KIND_EMBEDDED) {
+				reader.columnIndex = cursor.getColumnIndex(columnName);
+				if (reader.columnIndex == -1)
+					continue;
+			} else if (reader.embedded.readers.length == 0) {
+				continue;
+			}
+			readers.add(reader);
+		}
+		return new HydrationPlan(modelClass, readers.toArray(new FieldReader[readers.size()]));
+	}
+
+	public <K> K fill(Cursor cursor, K model) {
+		FieldReader[] readers = this.readers;
+		try {
+			for (int i = 0; i < readers.length; ++i) {
+				FieldReader reader = readers[i];
+				if (reader.kind == KIND_PRIMITIVE)
+					reader.codec.read(cursor, reader.columnIndex, reader.field, model);
+				else
+					reader.field.set(model, reader.read(cursor));
+			}
+		} catch (IllegalAccessException e) {
+			throw new BreakFastException(e);
+		}
+		return model;
+	}
+
+	private Object newInstance() {
+		try {
+			return modelClass.newInstance();
+		} catch (Exception e) {
+			throw new BreakFastException(e);
+		}
+	}
+
+	static class FieldReader {
+		final Field field;
+		final Class<?> fieldClass;
+		int kind;
+		int columnIndex = -1;
+		Java2DbType converter;
+		PrimitiveCodec codec;
+		HydrationPlan embedded;
+
+		FieldReader(Field field, Class<?> fieldClass) {
+			this.field = field;
+			this.fieldClass = fieldClass;
+		}
+
+		Object read(Cursor cursor) {
+			switch (kind) {
+				case KIND_STRING:
+					return cursor.getString(columnIndex);
+				case KIND_EMBEDDED:
+					return embedded.fill(cursor, embedded.newInstance());
+				default:
+					return converter.dbToJava(cursor, columnIndex, fieldClass);
+			}
+		}
+	}
+}
@@ -27,6 +27,46 @@ import java.util.Collection;
 public interface IDBDataSource<T extends IdentificableModel> extends IExtendedDataSource<T>{
 
 	public IPillowResult<Collection<T>> index(String selection, String[] selectionArgs, String order);
+	/**
+	 * Like index, but the models are created when accessed. The caller must close the returned list.
+	 */
+	public IPillowResult<LazyModelList<T>> lazyIndex(String selection, String[] selectionArgs, String order);
+	public IPillowResult<LazyModelList<T>> lazyIndex(T filter);
+	/**
+	 * Returns a page of the models with the given selection, using the default order.
+	 */
+	public IPillowResult<Page<T>> page(String selection, String[] selectionArgs, PageRequest request);
+	public IPillowResult<Page<T>> page(T filter, PageRequest request);
+	/**
+	 * Like index, but only the given fields (and the id) are read. Intended for list rendering.
+	 * @see DBModelController#projectedIndex(String[], String, String[], String)
+	 */
+	public IPillowResult<Collection<T>> projectedIndex(String[] fields, String selection, String[] selectionArgs, String order);
+	public IPillowResult<Collection<T>> projectedIndex(String[] fields, T filter);
+	/**
+	 * Like index, but filling instances of a view class whose fields are a subset of the model ones.
+	 */
+	public <V> IPillowResult<Collection<V>> projectedIndex(Class<V> viewClass, String selection, String[] selectionArgs, String order);
+	/**
+	 * Full text search on the Searchable fields, matching word prefixes.
+	 * @param limit max number of models, or 0 for no limit
+	 * @see DBModelController#search(String, String, String[], int)
+	 */
+	public IPillowResult<Collection<T>> search(String query, int limit);
+	public IPillowResult<Collection<T>> search(String query, T filter, int limit);
+	/**
+	 * @see ModelQuery
+	 * @see DBModelController#index(ModelQuery)
+	 */
+	public IPillowResult<Collection<T>> query(ModelQuery<T> query);
+	public IPillowResult<Integer> count(ModelQuery<T> query);
+	/**
+	 * Like index(filter) (all the models if filter is null), also loading the parents of the given belongs to fields
+	 * with a query per parent class.
+	 * @see DBModelController#include(Collection, String...)
+	 */
+	public IPillowResult<Collection<T>> indexIncluding(T filter, String... include);
+	public IPillowResult<T> showIncluding(T model, String... include);
 	public DBModelController<T> getDbModelController();
 	public IPillowResult<Integer> count(String selection, String[] selectionArgs);
 
@@ -92,5 +92,20 @@ public interface IDbMapping<T>{
 
 	public List<String> getTriggers();
 
+	/**
+	 * @return the CREATE INDEX IF NOT EXISTS statements of the table
+	 */
+	public List<String> getIndexes();
+
+	/**
+	 * @return the columns included in the full text search index, empty if the model is not searchable
+	 */
+	public List<String> getSearchColumns();
+
+	/**
+	 * @return the columns of Date and Calendar fields (see DBUtil.getDateType), embedded ones included
+	 */
+	public List<String> getDateColumns();
+
 	
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read only list backed by an open cursor. Models are created when accessed, and only the last
+ * windowSize accessed models are kept. The cursor stays open until close is called.
+ * The size is the one of the query when created: if the table is modified afterwards the rows may shift when the
+ * cursor is refilled, so the list should be reloaded when isStale.
+ */
+public class LazyModelList<T extends IdentificableModel> extends AbstractList<T> implements Closeable {
+	public static final int DEFAULT_WINDOW_SIZE = 100;
+
+	private final DBModelController<T> controller;
+	private final SQLiteDatabase db;
+	private final int size;
+	private final long[] tableVersions;
+	private final Map<Integer, T> window;
+	private Cursor cursor;
+
+	/**
+	 * @param tableVersions DBModelController.getTableVersions, read before the query
+	 */
+	public LazyModelList(DBModelController<T> controller, SQLiteDatabase db, Cursor cursor, long[] tableVersions, final int windowSize) {
+		this.controller = controller;
+		this.db = db;
+		this.cursor = cursor;
+		this.tableVersions = tableVersions;
+		this.size = cursor.getCount();
+		this.window = new LinkedHashMap<Integer, T>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+				return size() > windowSize;
+			}
+		};
+	}
+
+	@Override
+	public synchronized T get(int location) {
+		if (location < 0 || location >= size)
+			throw new IndexOutOfBoundsException("Invalid index " + location + ", size is " + size);
+		T model = window.get(location);
+		if (model == null) {
+			if (cursor == null)
+				throw new IllegalStateException("List already closed");
+			if (!cursor.moveToPosition(location))
+				throw new ConcurrentModificationException("Row " + location + " is no longer available, the table has been modified");
+			model = controller.createModel(db, cursor, true);
+			window.put(location, model);
+		}
+		return model;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the table (or one modified by its delete triggers) has been modified since the list was created
+	 */
+	public boolean isStale() {
+		return !Arrays.equals(tableVersions, controller.getTableVersions());
+	}
+
+	public synchronized boolean isClosed() {
+		return cursor == null;
+	}
+
+	/**
+	 * Closes the cursor. Models not already accessed can not be retrieved afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		if (cursor != null) {
+			cursor.close();
+			cursor = null;
+		}
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.BelongsToOnDelete;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.ValueType;
+import com.mateuyabar.util.exceptions.BreakFastException;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the models of a class read from the database, with LRU eviction by number of entries and
+ * estimated size in bytes. Used by DBModelController.get when set (see DefaultModelConfiguration.setModelCache).
+ *
+ * Entries are removed on writes of the model, and the whole cache is cleared on cacheAll and when a model of a class
+ * it belongs to is deleted (the delete triggers may modify or delete its rows).
+ * Models are copied when added and when returned (see ClassMetadata.copy), so callers can modify them.
+ */
+public class ModelCache<T extends IdentificableModel> {
+	private static final Map<Class<?>, ModelCache<?>> caches = new ConcurrentHashMap<Class<?>, ModelCache<?>>();
+	/**
+	 * Invalidations done inside a DbExecutor batch transaction of the current thread, repeated when it ends
+	 * (see transactionEnded). A null set of ids means the whole cache.
+	 */
+	private static final ThreadLocal<Map<ModelCache<?>, Set<String>>> transactionInvalidations = new ThreadLocal<Map<ModelCache<?>, Set<String>>>();
+
+	private final Class<T> modelClass;
+	private final int maxEntries;
+	private final long maxBytes;
+	/**
+	 * Classes whose deletes may modify rows of this class through belongs to triggers
+	 */
+	private final Set<Class<? extends IdentificableModel>> triggerParents;
+	private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true);
+	private long bytes;
+	private long generation;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param maxBytes max estimated size of the cached models, 0 for no limit
+	 */
+	public ModelCache(Class<T> modelClass, int maxEntries, long maxBytes) {
+		this.modelClass = modelClass;
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.triggerParents = getTriggerParents(modelClass);
+		caches.put(modelClass, this);
+	}
+
+	/**
+	 * @return a copy of the cached model, or null
+	 */
+	public T get(String id) {
+		Entry<T> entry;
+		synchronized (this) {
+			entry = entries.get(id);
+			if (entry == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		return copy(entry.model);
+	}
+
+	/**
+	 * @return value to be passed to put, read before querying the database
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Adds a copy of the model, unless the cache has been invalidated since the given generation was obtained
+	 */
+	public void put(T model, long generation) {
+		if (model == null)
+			return;
+		T copy = copy(model);
+		put(new Entry<T>(copy, sizeOf(copy)), generation);
+	}
+
+	private synchronized void put(Entry<T> entry, long generation) {
+		if (generation != this.generation)
+			return;
+		Entry<T> previous = entries.put(entry.model.getId(), entry);
+		if (previous != null)
+			bytes -= previous.bytes;
+		bytes += entry.bytes;
+		trim();
+	}
+
+	public synchronized void invalidate(String id) {
+		generation++;
+		Entry<T> entry = entries.remove(id);
+		if (entry != null)
+			bytes -= entry.bytes;
+	}
+
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Invalidates the model now, and again when the current DbExecutor batch transaction ends (if the write is part of
+	 * one): until then other threads may still read (and cache) the previous version.
+	 * Other transactions must invalidate again after they end.
+	 * @param inBatch result of DbExecutor.isBatchTransaction()
+	 */
+	public void invalidate(String id, boolean inBatch) {
+		invalidate(id);
+		if (inBatch) {
+			Map<ModelCache<?>, Set<String>> invalidations = getTransactionInvalidations();
+			if (!invalidations.containsKey(this)) {
+				invalidations.put(this, new HashSet<String>());
+			}
+			Set<String> ids = invalidations.get(this);
+			if (ids != null)
+				ids.add(id);
+		}
+	}
+
+	/**
+	 * Clears the cache now, and again when the current batch transaction ends (see invalidate(id, inBatch))
+	 */
+	public void clear(boolean inBatch) {
+		clear();
+		if (inBatch)
+			getTransactionInvalidations().put(this, null);
+	}
+
+	/**
+	 * Repeats the invalidations done during the batch transaction that has just ended on the current thread. Called by
+	 * DbExecutor after committing (or rolling back) a batch.
+	 */
+	public static void transactionEnded() {
+		Map<ModelCache<?>, Set<String>> invalidations = transactionInvalidations.get();
+		if (invalidations == null)
+			return;
+		transactionInvalidations.remove();
+		for (Map.Entry<ModelCache<?>, Set<String>> invalidation : invalidations.entrySet()) {
+			ModelCache<?> cache = invalidation.getKey();
+			if (invalidation.getValue() == null) {
+				cache.clear();
+			} else {
+				for (String id : invalidation.getValue()) {
+					cache.invalidate(id);
+				}
+			}
+		}
+	}
+
+	private static Map<ModelCache<?>, Set<String>> getTransactionInvalidations() {
+		Map<ModelCache<?>, Set<String>> invalidations = transactionInvalidations.get();
+		if (invalidations == null) {
+			invalidations = new HashMap<ModelCache<?>, Set<String>>();
+			transactionInvalidations.set(invalidations);
+		}
+		return invalidations;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T copy(T model) {
+		return (T) ClassMetadata.get(model.getClass()).copy(model);
+	}
+
+	private void trim() {
+		Iterator<Entry<T>> iterator = entries.values().iterator();
+		while (iterator.hasNext() && (entries.size() > maxEntries || (maxBytes > 0 && bytes > maxBytes))) {
+			Entry<T> entry = iterator.next();
+			iterator.remove();
+			bytes -= entry.bytes;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Estimated size of the model in bytes. Strings count two bytes per char, other fields a fixed size.
+	 */
+	protected int sizeOf(T model) {
+		int size = 16;
+		try {
+			for (Field field : ClassMetadata.get(model.getClass()).getStoredFields()) {
+				Object value = field.get(model);
+				if (value instanceof String)
+					size += 40 + ((String) value).length() * 2;
+				else
+					size += 16;
+			}
+		} catch (IllegalAccessException e) {
+			throw new BreakFastException(e);
+		}
+		return size;
+	}
+
+	/**
+	 * Clears the caches of the classes whose rows may be modified by the delete triggers of the given class
+	 */
+	public static void invalidateDependents(Class<?> deletedClass, boolean inBatch) {
+		for (ModelCache<?> cache : caches.values()) {
+			if (cache.triggerParents.contains(deletedClass))
+				cache.clear(inBatch);
+		}
+	}
+
+	/**
+	 * Clears all the caches (used when the tables are dropped)
+	 */
+	public static void clearAll() {
+		for (ModelCache<?> cache : caches.values()) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return classes whose deletes may modify rows of modelClass through belongs to triggers
+	 */
+	static Set<Class<? extends IdentificableModel>> getTriggerParents(Class<?> modelClass) {
+		Set<Class<? extends IdentificableModel>> result = new HashSet<Class<? extends IdentificableModel>>();
+		addTriggerParents(modelClass, result, new HashSet<Class<?>>());
+		return result;
+	}
+
+	/**
+	 * Adds the classes referenced with SET_NULL or CASCADE, and the ones that cascade delete those referenced with CASCADE
+	 */
+	private static void addTriggerParents(Class<?> modelClass, Set<Class<? extends IdentificableModel>> result, Set<Class<?>> cascadeVisited) {
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		for (Field field : metadata.getBelongsToFields()) {
+			ValueType valueType = metadata.getValueType(field);
+			if (valueType.belongsToMode() == BelongsToOnDelete.NO_ACTION)
+				continue;
+			result.add(valueType.belongsTo());
+		}
+		for (Field field : metadata.getBelongsToFields()) {
+			ValueType valueType = metadata.getValueType(field);
+			if (valueType.belongsToMode() != BelongsToOnDelete.NO_ACTION && cascadeVisited.add(valueType.belongsTo()))
+				addCascadeParents(valueType.belongsTo(), result, cascadeVisited);
+		}
+	}
+
+	/**
+	 * Adds the classes whose deletes delete rows of modelClass (CASCADE, transitively)
+	 */
+	private static void addCascadeParents(Class<?> modelClass, Set<Class<? extends IdentificableModel>> result, Set<Class<?>> visited) {
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		for (Field field : metadata.getBelongsToFields()) {
+			ValueType valueType = metadata.getValueType(field);
+			if (valueType.belongsToMode() == BelongsToOnDelete.CASCADE && visited.add(valueType.belongsTo())) {
+				result.add(valueType.belongsTo());
+				addCascadeParents(valueType.belongsTo(), result, visited);
+			}
+		}
+	}
+
+	public Class<T> getModelClass() {
+		return modelClass;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return hits / (hits + misses), 0 if not used
+	 */
+	public synchronized double getHitRate() {
+		long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return modelClass.getSimpleName() + " cache: " + entries.size() + " entries, " + bytes + " bytes, hits=" + hits
+				+ ", misses=" + misses + ", evictions=" + evictions;
+	}
+
+	private static class Entry<T> {
+		final T model;
+		final int bytes;
+
+		Entry(T model, int bytes) {
+			this.model = model;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import com.mateuyabar.android.pillow.Pillow;
+import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Query on the local database of a model class, executed with DBModelController.index(ModelQuery) or count(ModelQuery):
+ * <pre>
+ * ModelQuery.from(Task.class).where("priority", Operator.GE, 3).in("projectId", ids).orderBy("name", false).limit(20)
+ * </pre>
+ * Fields are checked against the columns of the mapping when added (embedded fields as field.subfield). Values are
+ * converted as when they are stored, and models are converted to their id. Arguments keep that type (see getArgs),
+ * so numbers are compared as numbers with INTEGER and REAL columns.
+ * The sql of each query shape (clauses, fields and operators, not values) is generated once and shared by later queries
+ * with the same shape, so only the arguments change and SQLite can reuse the prepared statement.
+ */
+public class ModelQuery<T extends IdentificableModel> {
+	public enum Operator {
+		EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), LIKE("LIKE");
+
+		final String sql;
+
+		Operator(String sql) {
+			this.sql = sql;
+		}
+	}
+
+	private static final int MAX_COMPILED_QUERIES = 200;
+	private static final Map<String, String[]> compiledQueries = new LinkedHashMap<String, String[]>(16, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+			return size() > MAX_COMPILED_QUERIES;
+		}
+	};
+	private static final Map<IDbMapping<?>, Set<String>> columnsByMapping = new ConcurrentHashMap<IDbMapping<?>, Set<String>>();
+
+	final Class<T> modelClass;
+	final IDbMapping<?> dbMapping;
+	final List<Clause> clauses = new ArrayList<Clause>();
+	final List<String[]> orders = new ArrayList<String[]>();
+	final List<Object> args = new ArrayList<Object>();
+	int limit = -1;
+	int offset = 0;
+
+	private ModelQuery(Class<T> modelClass, IDbMapping<?> dbMapping) {
+		this.modelClass = modelClass;
+		this.dbMapping = dbMapping;
+	}
+
+	public static <T extends IdentificableModel> ModelQuery<T> from(Class<T> modelClass) {
+		return from(modelClass, getDbMapping(modelClass));
+	}
+
+	/**
+	 * Query on the table of the given mapping, instead of the one configured in Pillow for the class
+	 */
+	public static <T extends IdentificableModel> ModelQuery<T> from(Class<T> modelClass, IDbMapping<?> dbMapping) {
+		return new ModelQuery<T>(modelClass, dbMapping);
+	}
+
+	public Class<T> getModelClass() {
+		return modelClass;
+	}
+
+	/**
+	 * A null value is compared with IS NULL (EQ) or IS NOT NULL (NE)
+	 */
+	public ModelQuery<T> where(String field, Operator operator, Object value) {
+		String column = getColumn(field);
+		Object dbValue = toDb(value);
+		if(dbValue==null){
+			if(operator!=Operator.EQ && operator!=Operator.NE)
+				throw new IllegalArgumentException("null can only be compared with EQ or NE: " + field);
+			return addClause(new Clause(operator==Operator.EQ ? Clause.IS_NULL : Clause.IS_NOT_NULL, column, operator, 0));
+		}
+		args.add(dbValue);
+		return addClause(new Clause(Clause.COMPARE, column, operator, 1));
+	}
+
+	public ModelQuery<T> where(String field, Object value) {
+		return where(field, Operator.EQ, value);
+	}
+
+	public ModelQuery<T> like(String field, String pattern) {
+		return where(field, Operator.LIKE, pattern);
+	}
+
+	/**
+	 * An empty collection matches nothing
+	 * @throws IllegalArgumentException if a value is null (IN never matches NULL, use where(field, null))
+	 */
+	public ModelQuery<T> in(String field, Collection<?> values) {
+		String column = getColumn(field);
+		for(Object value: values){
+			args.add(toDbNotNull(field, value));
+		}
+		return addClause(new Clause(Clause.IN, column, null, values.size()));
+	}
+
+	/**
+	 * Values between from and to, both included
+	 * @throws IllegalArgumentException if from or to are null
+	 */
+	public ModelQuery<T> between(String field, Object from, Object to) {
+		String column = getColumn(field);
+		args.add(toDbNotNull(field, from));
+		args.add(toDbNotNull(field, to));
+		return addClause(new Clause(Clause.BETWEEN, column, null, 2));
+	}
+
+	/**
+	 * Models whose parent (belongs to field) matches the parent query. Order and limit of the parent query are ignored.
+	 */
+	public ModelQuery<T> belongsTo(String field, ModelQuery<?> parentQuery) {
+		Field belongsToField = getBelongsToField(modelClass, field, parentQuery.getModelClass());
+		if(belongsToField==null)
+			throw new IllegalArgumentException(field + " of " + modelClass.getSimpleName() + " does not belong to " + parentQuery.getModelClass().getSimpleName());
+		args.addAll(parentQuery.args);
+		Clause clause = new Clause(Clause.BELONGS_TO, field, null, 0);
+		clause.subquery = parentQuery;
+		return addClause(clause);
+	}
+
+	/**
+	 * Models related to the given one through a model that belongs to both (many to many relation).
+	 */
+	public ModelQuery<T> hasManyThrough(Class<? extends IdentificableModel> through, IdentificableModel related) {
+		Field ownField = getBelongsToField(through, null, modelClass);
+		Field relatedField = getBelongsToField(through, null, related.getClass());
+		if(ownField==null || relatedField==null)
+			throw new IllegalArgumentException(through.getSimpleName() + " does not belong to " + modelClass.getSimpleName() + " and " + related.getClass().getSimpleName());
+		args.add(related.getId());
+		Clause clause = new Clause(Clause.HAS_MANY_THROUGH, ownField.getName(), null, 1);
+		clause.throughTable = getDbMapping(through).getTableName();
+		clause.throughColumn = relatedField.getName();
+		return addClause(clause);
+	}
+
+	public ModelQuery<T> orderBy(String field, boolean descending) {
+		orders.add(new String[]{getColumn(field), descending ? " DESC" : ""});
+		return this;
+	}
+
+	public ModelQuery<T> limit(int limit) {
+		this.limit = limit;
+		return this;
+	}
+
+	public ModelQuery<T> offset(int offset) {
+		this.offset = offset;
+		return this;
+	}
+
+	private ModelQuery<T> addClause(Clause clause) {
+		clauses.add(clause);
+		return this;
+	}
+
+	/**
+	 * @return the WHERE clause (without WHERE), null if there are no clauses
+	 */
+	public String getSelection() {
+		return compile()[0];
+	}
+
+	/**
+	 * @return the arguments of the selection, as stored (String, Long, Double...). They must be bound with their type
+	 * (DBUtil.bind): db.query binds all of them as text, which does not match numbers stored in INTEGER or REAL columns.
+	 */
+	public Object[] getArgs() {
+		return args.toArray();
+	}
+
+	/**
+	 * @return the ORDER BY clause (without ORDER BY), null if no order was given
+	 */
+	public String getOrderBy() {
+		return compile()[1];
+	}
+
+	/**
+	 * @return the LIMIT clause (without LIMIT), null if no limit or offset was given. Limit and offset are placeholders
+	 * bound with getLimitArgs after getArgs, so the sql does not change with them.
+	 */
+	public String getLimit() {
+		if(limit<0 && offset==0)
+			return null;
+		return "? OFFSET ?";
+	}
+
+	/**
+	 * @return limit (-1 for no limit) and offset, to be bound after getArgs when getLimit is not null
+	 */
+	public Object[] getLimitArgs() {
+		return new Object[]{limit<0 ? -1L : (long) limit, (long) offset};
+	}
+
+	/**
+	 * @return tables read by the belongsTo and hasManyThrough clauses (also the ones of the parent queries), sorted
+	 */
+	public Set<String> getJoinedTables() {
+		Set<String> tables = new TreeSet<String>();
+		for(Clause clause: clauses){
+			if(clause.subquery!=null){
+				tables.add(clause.subquery.dbMapping.getTableName());
+				tables.addAll(clause.subquery.getJoinedTables());
+			}
+			if(clause.throughTable!=null)
+				tables.add(clause.throughTable);
+		}
+		return tables;
+	}
+
+	/**
+	 * @return selection and order, generated once per shape
+	 */
+	private String[] compile() {
+		String shape = getShape();
+		synchronized (compiledQueries) {
+			String[] compiled = compiledQueries.get(shape);
+			if(compiled==null){
+				compiled = new String[]{createSelection(), createOrderBy()};
+				compiledQueries.put(shape, compiled);
+			}
+			return compiled;
+		}
+	}
+
+	String getShape() {
+		StringBuilder shape = new StringBuilder(dbMapping.getTableName());
+		for(Clause clause: clauses){
+			clause.appendShape(shape);
+		}
+		shape.append('|');
+		for(String[] order: orders){
+			shape.append(order[0]).append(order[1]).append(',');
+		}
+		return shape.toString();
+	}
+
+	private String createSelection() {
+		if(clauses.isEmpty())
+			return null;
+		String table = dbMapping.getTableName();
+		StringBuilder sql = new StringBuilder();
+		for(Clause clause: clauses){
+			if(sql.length()>0)
+				sql.append(" AND ");
+			clause.appendSql(sql, table);
+		}
+		return sql.toString();
+	}
+
+	private String createOrderBy() {
+		if(orders.isEmpty())
+			return null;
+		StringBuilder sql = new StringBuilder();
+		for(String[] order: orders){
+			if(sql.length()>0)
+				sql.append(DBUtil.COMMA_SEP);
+			sql.append(order[0]).append(order[1]);
+		}
+		return sql.toString();
+	}
+
+	private String getColumn(String field) {
+		String column = field.replace(".", ReflectionDbMapping.EMBEDDED_MODEL_ATTRIBUTE_SEPARATOR);
+		if(!getColumns(dbMapping).contains(column))
+			throw new IllegalArgumentException(field + " is not stored in " + modelClass.getSimpleName());
+		return column;
+	}
+
+	private static Object toDb(Object value) {
+		if(value instanceof IdentificableModel)
+			return ((IdentificableModel) value).getId();
+		return DBModelController.java2DbManager.javaToDb(value);
+	}
+
+	private static Object toDbNotNull(String field, Object value) {
+		Object dbValue = toDb(value);
+		if(dbValue==null)
+			throw new IllegalArgumentException("null value for " + field);
+		return dbValue;
+	}
+
+	private static Set<String> getColumns(IDbMapping<?> dbMapping) {
+		Set<String> columns = columnsByMapping.get(dbMapping);
+		if(columns==null){
+			columns = new HashSet<String>();
+			Collections.addAll(columns, DBModelController.COLUMN_NAME_ID, DBModelController.COLUMN_NAME_DIRTY, DBModelController.COLUMN_CREATED_AT, DBModelController.COLUMN_UPDATED_AT);
+			Collections.addAll(columns, dbMapping.getModelAttributesForProjection());
+			columnsByMapping.put(dbMapping, columns);
+		}
+		return columns;
+	}
+
+	/**
+	 * @param name name of the field, or null for the first belongs to field of the parent class
+	 * @return the belongs to field of modelClass with the given name and parent class, or null
+	 */
+	private static Field getBelongsToField(Class<?> modelClass, String name, Class<?> parentClass) {
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		for(Field field: metadata.getBelongsToFields()){
+			if((name==null || field.getName().equals(name)) && metadata.getValueType(field).belongsTo()==parentClass)
+				return field;
+		}
+		return null;
+	}
+
+	private static IDbMapping<?> getDbMapping(Class<? extends IdentificableModel> modelClass) {
+		return Pillow.getInstance().getModelConfiguration(modelClass).getDbMapping();
+	}
+
+	static class Clause {
+		static final int COMPARE = 0;
+		static final int IS_NULL = 1;
+		static final int IS_NOT_NULL = 2;
+		static final int IN = 3;
+		static final int BETWEEN = 4;
+		static final int BELONGS_TO = 5;
+		static final int HAS_MANY_THROUGH = 6;
+
+		final int type;
+		final String column;
+		final Operator operator;
+		final int argCount;
+		ModelQuery<?> subquery;
+		String throughTable;
+		String throughColumn;
+
+		Clause(int type, String column, Operator operator, int argCount) {
+			this.type = type;
+			this.column = column;
+			this.operator = operator;
+			this.argCount = argCount;
+		}
+
+		void appendShape(StringBuilder shape) {
+			shape.append(';').append(type).append(':').append(column).append(':').append(operator).append(':').append(argCount);
+			if(subquery!=null)
+				shape.append('(').append(subquery.getShape()).append(')');
+			if(throughTable!=null)
+				shape.append(':').append(throughTable).append('.').append(throughColumn);
+		}
+
+		void appendSql(StringBuilder sql, String table) {
+			switch (type) {
+				case COMPARE:
+					sql.append(column).append(' ').append(operator.sql).append(" ?");
+					break;
+				case IS_NULL:
+					sql.append(column).append(" IS NULL");
+					break;
+				case IS_NOT_NULL:
+					sql.append(column).append(" IS NOT NULL");
+					break;
+				case IN:
+					if(argCount==0)
+						sql.append("0");
+					else
+						sql.append(column).append(" IN (").append(DBUtil.createPlaceholders(argCount)).append(')');
+					break;
+				case BETWEEN:
+					sql.append(column).append(" BETWEEN ? AND ?");
+					break;
+				case BELONGS_TO:
+					String parentSelection = subquery.getSelection();
+					sql.append(column).append(" IN (SELECT ").append(DBModelController.COLUMN_NAME_ID).append(" FROM ").append(subquery.dbMapping.getTableName());
+					if(parentSelection!=null)
+						sql.append(" WHERE ").append(parentSelection);
+					sql.append(')');
+					break;
+				case HAS_MANY_THROUGH:
+					sql.append("EXISTS (SELECT 1 FROM ").append(throughTable).append(" t WHERE t.").append(throughColumn).append(" = ? AND t.")
+							.append(column).append(" = ").append(table).append('.').append(DBModelController.COLUMN_NAME_ID).append(')');
+					break;
+				default:
+					throw new IllegalStateException();
+			}
+		}
+	}
+}
@@ -25,13 +25,9 @@ import com.mateuyabar.android.pillow.data.core.PillowResultListener;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 
 public class MultiThreadDbDataSource<T extends IdentificableModel> implements ISynchLocalDbDataSource<T> {
-	private static ThreadPoolExecutor dbThreadPool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 //	static ThreadPoolExecutor threadPoolExecutor = new FullStackThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
 	ISynchLocalDbDataSource<T> dataSource;
@@ -41,8 +37,14 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 		this.dataSource=dataSource;
 	}
 
-	public abstract static class OperationRunnable<L> implements Runnable{
+	/**
+	 * Operation executed on the DbExecutor. Writes are executed (execute) and their result delivered to the
+	 * proxy result (deliver) after the transaction of its batch is committed.
+	 */
+	public abstract static class OperationRunnable<L> implements Runnable, DbExecutor.BatchableWrite{
 		PillowResultListener<L> proxyResult;
+		IPillowResult<L> mainResult;
+		PillowError error;
 		public OperationRunnable() {
 			this.proxyResult = new PillowResultListener<L>();
 		}
@@ -50,17 +52,43 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 			return proxyResult;
 		}
 		public void run(){
+			execute();
+			deliver();
+		}
+		@Override
+		public boolean execute() {
+			mainResult = null;
+			error = null;
 			try {
-				createMainPillowResult().addListeners(proxyResult, proxyResult);
+				mainResult = createMainPillowResult();
 			} catch (PillowError e) {
-				proxyResult.setError(e);
+				error = e;
 			}
+			return error==null && mainResult.getError()==null;
+		}
+		@Override
+		public void deliver() {
+			if(error!=null)
+				proxyResult.setError(error);
+			else
+				mainResult.addListeners(proxyResult, proxyResult);
 		}
 		protected abstract IPillowResult<L> createMainPillowResult() throws PillowError;
 	}
 	
+	/**
+	 * Executes a read operation on the reader pool of DbExecutor
+	 */
 	private <K> IPillowResult<K> execute(OperationRunnable<K> runnable){
-		dbThreadPool.execute(runnable);
+		DbExecutor.getInstance().executeRead(runnable);
+		return runnable.getProxyResult();
+	}
+
+	/**
+	 * Executes a write operation on the writer thread of DbExecutor (batched with the adjacent ones)
+	 */
+	private <K> IPillowResult<K> executeWrite(OperationRunnable<K> runnable){
+		DbExecutor.getInstance().executeWrite((DbExecutor.BatchableWrite) runnable);
 		return runnable.getProxyResult();
 	}
 	
@@ -98,6 +126,136 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 		});
 	}
 
+	@Override
+	public IPillowResult<LazyModelList<T>> lazyIndex(final String selection, final String[] selectionArgs, final String order) {
+		return execute(new OperationRunnable<LazyModelList<T>>(){
+			@Override
+			protected IPillowResult<LazyModelList<T>> createMainPillowResult() {
+				return dataSource.lazyIndex(selection, selectionArgs, order);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<LazyModelList<T>> lazyIndex(final T filter) {
+		return execute(new OperationRunnable<LazyModelList<T>>(){
+			@Override
+			protected IPillowResult<LazyModelList<T>> createMainPillowResult() {
+				return dataSource.lazyIndex(filter);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Page<T>> page(final String selection, final String[] selectionArgs, final PageRequest request) {
+		return execute(new OperationRunnable<Page<T>>(){
+			@Override
+			protected IPillowResult<Page<T>> createMainPillowResult() {
+				return dataSource.page(selection, selectionArgs, request);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Page<T>> page(final T filter, final PageRequest request) {
+		return execute(new OperationRunnable<Page<T>>(){
+			@Override
+			protected IPillowResult<Page<T>> createMainPillowResult() {
+				return dataSource.page(filter, request);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> projectedIndex(final String[] fields, final String selection, final String[] selectionArgs, final String order) {
+		return execute(new OperationRunnable<Collection<T>>(){
+			@Override
+			protected IPillowResult<Collection<T>> createMainPillowResult() {
+				return dataSource.projectedIndex(fields, selection, selectionArgs, order);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> projectedIndex(final String[] fields, final T filter) {
+		return execute(new OperationRunnable<Collection<T>>(){
+			@Override
+			protected IPillowResult<Collection<T>> createMainPillowResult() {
+				return dataSource.projectedIndex(fields, filter);
+			}
+		});
+	}
+
+	@Override
+	public <V> IPillowResult<Collection<V>> projectedIndex(final Class<V> viewClass, final String selection, final String[] selectionArgs, final String order) {
+		return execute(new OperationRunnable<Collection<V>>(){
+			@Override
+			protected IPillowResult<Collection<V>> createMainPillowResult() {
+				return dataSource.projectedIndex(viewClass, selection, selectionArgs, order);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> search(final String query, final int limit) {
+		return execute(new OperationRunnable<Collection<T>>(){
+			@Override
+			protected IPillowResult<Collection<T>> createMainPillowResult() {
+				return dataSource.search(query, limit);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> search(final String query, final T filter, final int limit) {
+		return execute(new OperationRunnable<Collection<T>>(){
+			@Override
+			protected IPillowResult<Collection<T>> createMainPillowResult() {
+				return dataSource.search(query, filter, limit);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> query(final ModelQuery<T> query) {
+		return execute(new OperationRunnable<Collection<T>>(){
+			@Override
+			protected IPillowResult<Collection<T>> createMainPillowResult() {
+				return dataSource.query(query);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Integer> count(final ModelQuery<T> query) {
+		return execute(new OperationRunnable<Integer>(){
+			@Override
+			protected IPillowResult<Integer> createMainPillowResult() {
+				return dataSource.count(query);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<Collection<T>> indexIncluding(final T filter, final String... include) {
+		return execute(new OperationRunnable<Collection<T>>(){
+			@Override
+			protected IPillowResult<Collection<T>> createMainPillowResult() {
+				return dataSource.indexIncluding(filter, include);
+			}
+		});
+	}
+
+	@Override
+	public IPillowResult<T> showIncluding(final T model, final String... include) {
+		return execute(new OperationRunnable<T>(){
+			@Override
+			protected IPillowResult<T> createMainPillowResult() {
+				return dataSource.showIncluding(model, include);
+			}
+		});
+	}
+
 	@Override
 	public IPillowResult<T> show(final T model) {
 		return execute(new OperationRunnable<T>() {
@@ -108,9 +266,19 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 		});
 	}
 	
+	@Override
+	public IPillowResult<List<T>> showAll(final List<T> models) {
+		return execute(new OperationRunnable<List<T>>() {
+			@Override
+			protected IPillowResult<List<T>> createMainPillowResult() {
+				return dataSource.showAll(models);
+			}
+		});
+	}
+
 	@Override
 	public IPillowResult<T> create(final T model) {
-		return execute(new OperationRunnable<T>(){
+		return executeWrite(new OperationRunnable<T>(){
 			@Override
 			protected IPillowResult<T> createMainPillowResult() {
 				return dataSource.create(model);
@@ -120,7 +288,7 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 	
 	@Override
 	public IPillowResult<T> update(final T model) {
-		return execute(new OperationRunnable<T>(){
+		return executeWrite(new OperationRunnable<T>(){
 			@Override
 			protected IPillowResult<T> createMainPillowResult() {
 				return dataSource.update(model);
@@ -130,7 +298,7 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 	
 	@Override
 	public IPillowResult<Void> destroy(final T model) {
-		return execute(new OperationRunnable<Void>(){
+		return executeWrite(new OperationRunnable<Void>(){
 			@Override
 			protected IPillowResult<Void> createMainPillowResult() {
 				return dataSource.destroy(model);
@@ -163,7 +331,7 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 
 	@Override
 	public IPillowResult<T> setAsNotDirty(final T model) {
-		return execute(new OperationRunnable<T>() {
+		return executeWrite(new OperationRunnable<T>() {
 			@Override
 			protected IPillowResult<T> createMainPillowResult() throws PillowError {
 				return dataSource.setAsNotDirty(model);
@@ -178,8 +346,13 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 	}
 
 	@Override
-	public void cacheAll(List<T> models) {
-		dataSource.cacheAll(models);
+	public void cacheAll(final List<T> models) {
+		DbExecutor.getInstance().executeWriteAndWait(new Runnable() {
+			@Override
+			public void run() {
+				dataSource.cacheAll(models);
+			}
+		});
 	}
 
 	@Override
@@ -188,8 +361,13 @@ public class MultiThreadDbDataSource<T extends IdentificableModel> implements IS
 	}
 
 	@Override
-	public void setAsDeleted(String id) {
-		dataSource.setAsDeleted(id);
+	public void setAsDeleted(final String id) {
+		DbExecutor.getInstance().executeWriteAndWait(new Runnable() {
+			@Override
+			public void run() {
+				dataSource.setAsDeleted(id);
+			}
+		});
 	}
 
 	@Override
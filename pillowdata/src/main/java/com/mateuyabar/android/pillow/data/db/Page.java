@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import java.util.List;
+
+/**
+ * Page of models returned by a paged query.
+ */
+public class Page<T> {
+	private final List<T> models;
+	private final PageRequest request;
+	private final String nextPageToken;
+
+	public Page(List<T> models, PageRequest request, String nextPageToken) {
+		this.models = models;
+		this.request = request;
+		this.nextPageToken = nextPageToken;
+	}
+
+	public List<T> getModels() {
+		return models;
+	}
+
+	public PageRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * @return token of the next page, or null if this is the last one
+	 */
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+
+	public boolean hasNextPage() {
+		return nextPageToken!=null;
+	}
+
+	/**
+	 * @return request of the next page with the same size, or null if this is the last one
+	 */
+	public PageRequest getNextPageRequest() {
+		return hasNextPage() ? PageRequest.fromToken(nextPageToken, request.getLimit()) : null;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.Cursor;
+
+import static com.mateuyabar.android.pillow.data.db.DBModelController.COLUMN_NAME_ID;
+
+/**
+ * Builds the order, where and tokens of paged queries. The order is the default order of the mapping
+ * (a single column, as generated from OrderBy) followed by the id, so rows with the same value keep a stable order.
+ *
+ * Keyset tokens contain the id and order value of the last row of the page: "k" + n|v + id length + ":" + id + value.
+ * Offset tokens are "o" + offset.
+ */
+class PageQuery {
+	private static final char KEYSET = 'k';
+	private static final char OFFSET = 'o';
+	private static final char NULL_VALUE = 'n';
+	private static final char VALUE = 'v';
+
+	final String column;
+	final boolean desc;
+	final boolean noCase;
+
+	private PageQuery(String column, boolean desc, boolean noCase) {
+		this.column = column;
+		this.desc = desc;
+		this.noCase = noCase;
+	}
+
+	/**
+	 * @param order order as returned by IDbMapping.getDefaultModelOrder (may be null)
+	 */
+	static PageQuery create(String order) {
+		if(order==null || order.trim().length()==0)
+			return new PageQuery(null, false, false);
+		if(order.indexOf(',')!=-1 || order.indexOf('(')!=-1)
+			throw new UnsupportedOperationException("Paging needs a single column order: "+order);
+		String[] tokens = order.trim().split("\\s+");
+		String last = tokens[tokens.length-1];
+		boolean noCase = order.toUpperCase().contains("NOCASE");
+		return new PageQuery(tokens[0], "DESC".equalsIgnoreCase(last), noCase);
+	}
+
+	static boolean isKeysetToken(String token) {
+		return token==null || token.charAt(0)==KEYSET;
+	}
+
+	String getOrderBy() {
+		String direction = desc ? " DESC" : "";
+		if(column==null)
+			return COLUMN_NAME_ID;
+		return getColumnExpression() + direction + DBUtil.COMMA_SEP + COLUMN_NAME_ID + direction;
+	}
+
+	private String getColumnExpression() {
+		return noCase ? column + " COLLATE NOCASE" : column;
+	}
+
+	/**
+	 * @return LIMIT clause of the request, asking for one extra row to know if there is a next page
+	 */
+	String getLimit(PageRequest request) {
+		String limit = String.valueOf(request.getLimit()+1);
+		if(request.isKeyset() || request.getToken()==null)
+			return limit;
+		return getOffset(request.getToken()) + DBUtil.COMMA_SEP + limit;
+	}
+
+	/**
+	 * @return selection adding to the given one the condition of rows after the token (if keyset paging)
+	 */
+	IDbMapping.IDBSelection getSelection(String selection, String[] selectionArgs, PageRequest request) {
+		String token = request.getToken();
+		if(!request.isKeyset() || token==null)
+			return new IDbMapping.DBSelection(selection, selectionArgs);
+
+		int separator = token.indexOf(':');
+		int idLength = Integer.parseInt(token.substring(2, separator));
+		String id = token.substring(separator+1, separator+1+idLength);
+		String value = token.charAt(1)==NULL_VALUE ? null : token.substring(separator+1+idLength);
+
+		String after = desc ? " < ?" : " > ?";
+		String keyset;
+		String[] keysetArgs;
+		if(column==null) {
+			keyset = COLUMN_NAME_ID + after;
+			keysetArgs = new String[]{id};
+		} else if(value==null) {
+			//nulls are first on ASC and last on DESC
+			keyset = "(" + column + " IS NULL AND " + COLUMN_NAME_ID + after + ")";
+			if(!desc)
+				keyset = "(" + keyset + " OR " + column + " IS NOT NULL)";
+			keysetArgs = new String[]{id};
+		} else {
+			String columnExpression = getColumnExpression();
+			keyset = "(" + columnExpression + after + " OR (" + columnExpression + " = ? AND " + COLUMN_NAME_ID + after + ")";
+			if(desc)
+				keyset += " OR " + column + " IS NULL";
+			keyset += ")";
+			keysetArgs = new String[]{value, value, id};
+		}
+
+		if(selection==null || selection.length()==0)
+			return new IDbMapping.DBSelection(keyset, keysetArgs);
+		String[] args = selectionArgs==null ? new String[0] : selectionArgs;
+		String[] allArgs = new String[args.length+keysetArgs.length];
+		System.arraycopy(args, 0, allArgs, 0, args.length);
+		System.arraycopy(keysetArgs, 0, allArgs, args.length, keysetArgs.length);
+		return new IDbMapping.DBSelection("(" + selection + ") AND " + keyset, allArgs);
+	}
+
+	/**
+	 * @param cursor positioned on the last row of the page
+	 * @param returned number of rows returned until now (including the given one)
+	 */
+	String createNextToken(PageRequest request, Cursor cursor, int returned) {
+		if(!request.isKeyset()) {
+			int offset = request.getToken()==null ? 0 : getOffset(request.getToken());
+			return OFFSET + String.valueOf(offset+returned);
+		}
+		String id = cursor.getString(cursor.getColumnIndex(COLUMN_NAME_ID));
+		StringBuilder builder = new StringBuilder();
+		builder.append(KEYSET);
+		String value = null;
+		if(column!=null) {
+			int index = cursor.getColumnIndex(column);
+			if(index==-1)
+				throw new UnsupportedOperationException("Order column not in projection: "+column);
+			value = cursor.getString(index);
+		}
+		builder.append(value==null ? NULL_VALUE : VALUE);
+		builder.append(id.length()).append(':').append(id);
+		if(value!=null)
+			builder.append(value);
+		return builder.toString();
+	}
+
+	private static int getOffset(String token) {
+		if(token.charAt(0)!=OFFSET)
+			throw new IllegalArgumentException("Invalid page token "+token);
+		return Integer.parseInt(token.substring(1));
+	}
+}
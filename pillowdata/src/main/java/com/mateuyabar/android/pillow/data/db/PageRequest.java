@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+/**
+ * Request of a page of models. Use firstPage (keyset paging, on the default order) or firstOffsetPage to get the
+ * first one, and Page.getNextPageRequest for the following ones.
+ */
+public class PageRequest {
+	private final int limit;
+	private final boolean keyset;
+	private final String token;
+
+	PageRequest(int limit, boolean keyset, String token) {
+		if(limit<=0)
+			throw new IllegalArgumentException("Invalid page size "+limit);
+		this.limit = limit;
+		this.keyset = keyset;
+		this.token = token;
+	}
+
+	/**
+	 * First page using keyset paging: next pages are obtained with a where on the last returned row,
+	 * so any page costs the same as the first one.
+	 */
+	public static PageRequest firstPage(int limit) {
+		return new PageRequest(limit, true, null);
+	}
+
+	/**
+	 * First page using LIMIT/OFFSET paging.
+	 */
+	public static PageRequest firstOffsetPage(int limit) {
+		return new PageRequest(limit, false, null);
+	}
+
+	/**
+	 * @param token as returned by Page.getNextPageToken
+	 */
+	public static PageRequest fromToken(String token, int limit) {
+		return new PageRequest(limit, PageQuery.isKeysetToken(token), token);
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public boolean isKeyset() {
+		return keyset;
+	}
+
+	/**
+	 * @return token of the page, null for the first one
+	 */
+	public String getToken() {
+		return token;
+	}
+}
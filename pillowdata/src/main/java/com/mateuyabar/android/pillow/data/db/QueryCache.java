@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * LRU cache of index results of a DBModelController, by selection, args and order. Each result keeps the versions
+ * of the tables it depends on (see TableVersions) and is discarded when any of them changes.
+ * Models are copied when added and when returned (see ClassMetadata.copy), so callers can modify them.
+ */
+class QueryCache<T> {
+	private final int maxQueries;
+	private final LinkedHashMap<List<Object>, Entry<T>> entries = new LinkedHashMap<List<Object>, Entry<T>>(16, 0.75f, true);
+	private long hits;
+	private long misses;
+
+	QueryCache(int maxQueries) {
+		this.maxQueries = maxQueries;
+	}
+
+	/**
+	 * @param selectionArgs String or typed (ModelQuery.getArgs) arguments
+	 */
+	static List<Object> createKey(String selection, Object[] selectionArgs, String order) {
+		List<Object> args = selectionArgs == null ? null : new ArrayList<Object>(Arrays.asList(selectionArgs));
+		return Arrays.<Object>asList(selection, args, order);
+	}
+
+	/**
+	 * @return a copy of the cached models, or null if not cached or outdated
+	 */
+	List<T> get(List<Object> key, long[] versions) {
+		Entry<T> entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null || !Arrays.equals(entry.versions, versions)) {
+				if (entry != null)
+					entries.remove(key);
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		return copy(entry.models);
+	}
+
+	/**
+	 * @param versions versions of the tables read before executing the query
+	 */
+	void put(List<Object> key, long[] versions, List<T> models) {
+		Entry<T> entry = new Entry<T>(versions, copy(models));
+		synchronized (this) {
+			entries.put(key, entry);
+			if (entries.size() > maxQueries) {
+				entries.remove(entries.keySet().iterator().next());
+			}
+		}
+	}
+
+	private static <T> List<T> copy(List<T> models) {
+		List<T> result = new ArrayList<T>(models.size());
+		for (T model : models) {
+			result.add(model == null ? null : ClassMetadata.get(model.getClass()).copy(model));
+		}
+		return result;
+	}
+
+	synchronized long getHitCount() {
+		return hits;
+	}
+
+	synchronized long getMissCount() {
+		return misses;
+	}
+
+	private static class Entry<T> {
+		final long[] versions;
+		final List<T> models;
+
+		Entry(long[] versions, List<T> models) {
+			this.versions = versions;
+			this.models = models;
+		}
+	}
+}
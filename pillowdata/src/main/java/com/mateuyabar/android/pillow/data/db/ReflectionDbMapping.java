@@ -20,23 +20,38 @@ package com.mateuyabar.android.pillow.data.db;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+import android.text.TextUtils;
 
 import com.mateuyabar.android.pillow.Pillow;
 import com.mateuyabar.android.pillow.data.db.java2db.Java2DbManager;
+import com.mateuyabar.android.pillow.data.db.java2db.Java2DbType;
+import com.mateuyabar.android.pillow.data.db.java2db.PrimitiveCodec;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
 import com.mateuyabar.android.pillow.util.reflection.ReflectionUtil;
 import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.BelongsToOnDelete;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.Indexed;
 import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.OrderBy;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.Searchable;
 import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.ValueType;
 import com.mateuyabar.util.exceptions.BreakFastException;
 import com.mateuyabar.util.exceptions.UnimplementedException;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMapping<T>{
-	private static final String EMBEDDED_MODEL_ATTRIBUTE_SEPARATOR = "_";
+	static final String EMBEDDED_MODEL_ATTRIBUTE_SEPARATOR = "_";
 	
 	Class<T> modelClass;
 	
@@ -44,6 +59,19 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
 	String[][] atts;
 	boolean orderByLoaded=false;
 	String orderBy;
+	/**
+	 * Hydration plans by projection (column names of the cursor)
+	 */
+	Map<String, HydrationPlan> hydrationPlans = new HashMap<String, HydrationPlan>();
+	/**
+	 * Plan used for the last cursor of each thread, so consecutive rows of the same cursor skip the projection lookup
+	 * (cursors are read concurrently by the DbExecutor readers)
+	 */
+	final ThreadLocal<CursorPlan> lastCursorPlan = new ThreadLocal<CursorPlan>();
+	/**
+	 * Column indexes resolved for the last cursor of each thread (used by generated mappings)
+	 */
+	final ThreadLocal<CursorColumns> lastCursorColumns = new ThreadLocal<CursorColumns>();
 
 	Java2DbManager java2DbManager = new Java2DbManager();
 
@@ -64,27 +92,23 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
 	@Override
 	public String getDefaultModelOrder() {
 		if(!orderByLoaded){
-			Field[] fields = ReflectionUtil.getStoredFields(modelClass);
-			for(Field field: fields){
-				OrderBy orderByAnnotation = (OrderBy) field.getAnnotation(OrderBy.class);
-				if(orderByAnnotation!=null){
-					orderBy = field.getName();
-					switch(orderByAnnotation.type()){
-					case ASC:
-						break;
-					case DESC:
-						orderBy += " DESC";
-						break;
-					case ASC_NO_COLLATE:
-						orderBy += " COLLATE NOCASE";
-						break;
-					case DESC_NO_COLLATE:
-						orderBy += " COLLATE NOCASE DESC";
-						break;
-					}
-					
+			ClassMetadata metadata = ClassMetadata.get(modelClass);
+			OrderBy orderByAnnotation = metadata.getOrderBy();
+			if(orderByAnnotation!=null){
+				orderBy = metadata.getOrderByField().getName();
+				switch(orderByAnnotation.type()){
+				case ASC:
+					break;
+				case DESC:
+					orderBy += " DESC";
+					break;
+				case ASC_NO_COLLATE:
+					orderBy += " COLLATE NOCASE";
+					break;
+				case DESC_NO_COLLATE:
+					orderBy += " COLLATE NOCASE DESC";
+					break;
 				}
-				
 			}
 			orderByLoaded=true;
 		}
@@ -99,6 +123,15 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
     public void addModelContentValues(Object model, ContentValues values, String prefix) {
         for(Field field: ReflectionUtil.getStoredFields(model.getClass())){
             String key = prefix+field.getName();
+            PrimitiveCodec codec = PrimitiveCodec.get(field.getType());
+            if(codec!=null){
+                try {
+                    codec.put(values, key, field, model);
+                } catch (IllegalAccessException e) {
+                    throw new BreakFastException(e);
+                }
+                continue;
+            }
             Object value  = dbValue(field, model);
 
             if(value!=null && ReflectionUtil.isEmbeddable(value.getClass())){
@@ -111,9 +144,44 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
 
 
 
+    /**
+     * Binds the model attributes in getModelAttributesForProjection order, without ContentValues (primitive fields are
+     * not boxed). Null values and the columns of null embedded models are bound as null.
+     * @param firstIndex 1 based index of the first attribute
+     * @return index following the last attribute
+     */
+    public int bindModelValues(T model, SQLiteProgram statement, int firstIndex) {
+        return bindModelValues(model, modelClass, statement, firstIndex);
+    }
+
+    private int bindModelValues(Object model, Class<?> modelClass, SQLiteProgram statement, int index) {
+        try {
+            for(Field field: ReflectionUtil.getStoredFields(modelClass)){
+                if(field.getName().equals("id"))
+                    continue;
+                Class<?> fieldClass = field.getType();
+                PrimitiveCodec codec = PrimitiveCodec.get(fieldClass);
+                if(model==null){
+                    if(ReflectionUtil.isEmbeddable(fieldClass))
+                        index = bindModelValues(null, fieldClass, statement, index);
+                    else
+                        statement.bindNull(index++);
+                } else if(codec!=null){
+                    codec.bind(statement, index++, field, model);
+                } else if(ReflectionUtil.isEmbeddable(fieldClass)){
+                    index = bindModelValues(field.get(model), fieldClass, statement, index);
+                } else {
+                    DBUtil.bind(statement, index++, java2DbManager.javaToDb(field.get(model)));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new BreakFastException(e);
+        }
+        return index;
+    }
+
     private Object dbValue(Field field, Object model) {
         try {
-            field.setAccessible(true);
             Object value = field.get(model);
             return java2DbManager.javaToDb(value);
         } catch (Exception e) {
@@ -128,16 +196,83 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
 			T model;
 			model = modelClass.newInstance();
 			model.setId(id);
-			fillModel(cursor, model);
+			getHydrationPlan(cursor).fill(cursor, model);
 			return model;
 		} catch (Exception e) {
 			throw new BreakFastException(e);
 		}
 	}
 	
-	private <K> K fillModel(Cursor cursor, K model){
-		return fillModel(cursor, model, "");
-		
+	/**
+	 * Returns the plan to fill models from the given cursor. It is computed once per projection, and looked up once per
+	 * cursor and thread.
+	 */
+	protected HydrationPlan getHydrationPlan(Cursor cursor){
+		CursorPlan cursorPlan = lastCursorPlan.get();
+		if(cursorPlan!=null && cursorPlan.cursor.get()==cursor)
+			return cursorPlan.plan;
+
+		String projection = TextUtils.join(",", cursor.getColumnNames());
+		HydrationPlan plan;
+		synchronized (hydrationPlans) {
+			plan = hydrationPlans.get(projection);
+			if(plan==null){
+				plan = HydrationPlan.create(modelClass, "", cursor, java2DbManager);
+				hydrationPlans.put(projection, plan);
+			}
+		}
+		lastCursorPlan.set(new CursorPlan(cursor, plan));
+		return plan;
+	}
+
+	/**
+	 * Returns the indexes of the given columns in the cursor (-1 if not present). They are resolved once per cursor and
+	 * thread.
+	 * Used by generated mappings, that know their columns at compile time.
+	 */
+	protected int[] getColumnIndexes(Cursor cursor, String[] columns){
+		CursorColumns cursorColumns = lastCursorColumns.get();
+		if(cursorColumns!=null && cursorColumns.cursor.get()==cursor && cursorColumns.columns==columns)
+			return cursorColumns.indexes;
+
+		int[] indexes = new int[columns.length];
+		for(int i=0; i<columns.length; ++i){
+			indexes[i] = cursor.getColumnIndex(columns[i]);
+		}
+		lastCursorColumns.set(new CursorColumns(cursor, columns, indexes));
+		return indexes;
+	}
+
+	/**
+	 * Returns the conversor for the given field class. Used by generated mappings.
+	 */
+	protected Java2DbType getJava2DbType(Class<?> fieldClass) {
+		Java2DbType java2DbType = java2DbManager.get(fieldClass);
+		if(java2DbType==null)
+			throw new UnsupportedOperationException(fieldClass.toString());
+		return java2DbType;
+	}
+
+	static class CursorColumns {
+		final WeakReference<Cursor> cursor;
+		final String[] columns;
+		final int[] indexes;
+
+		CursorColumns(Cursor cursor, String[] columns, int[] indexes) {
+			this.cursor = new WeakReference<Cursor>(cursor);
+			this.columns = columns;
+			this.indexes = indexes;
+		}
+	}
+
+	static class CursorPlan {
+		final WeakReference<Cursor> cursor;
+		final HydrationPlan plan;
+
+		CursorPlan(Cursor cursor, HydrationPlan plan) {
+			this.cursor = new WeakReference<Cursor>(cursor);
+			this.plan = plan;
+		}
 	}
 
 
@@ -172,7 +307,6 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
 			String fieldName = field_prefix + field.getName();
 			Class<?> fieldClass = field.getType();
 			Object value = getValue(cursor, fieldName, fieldClass);
-			field.setAccessible(true);
 			try {
 				field.set(model, value);
 			} catch (Exception e) {
@@ -250,14 +384,11 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
 	private String getDbType(Field field) {
 		String type;
 		Class<?> fieldClass = field.getType();
+		PrimitiveCodec codec = PrimitiveCodec.get(fieldClass);
 		if(String.class.isAssignableFrom(fieldClass)){
 			type = DBUtil.STRING_TYPE;
-		} else if(ReflectionUtil.isInt(fieldClass)){
-			type = DBUtil.INT_TYPE;
-		} else if(Double.class.isAssignableFrom(fieldClass)){
-			type = DBUtil.DOUBLE_TYPE;
-		} else if(Long.class.isAssignableFrom(fieldClass)){
-			throw new UnimplementedException();
+		} else if(codec!=null){
+			type = codec.getDbType();
 		} else {
 			type = java2DbManager.getDbType(fieldClass);
 		}
@@ -305,31 +436,115 @@ public class ReflectionDbMapping<T extends IdentificableModel> implements IDbMap
 	@Override
 	public List<String> getTriggers() {
 		List<String> result = new ArrayList<String>();
-		Field[] fields = ReflectionUtil.getStoredFields(modelClass);
-		for(Field field:fields){
-			ValueType valueType = field.getAnnotation(ValueType.class);
-			if(ReflectionUtil.isBelongsTo(field) && valueType.belongsToMode()!=BelongsToOnDelete.NO_ACTION){
-				Class<? extends IdentificableModel> referencedClass = valueType.belongsTo();
-				BelongsToOnDelete onDelete = valueType.belongsToMode();
-				IDbMapping<?> referencedDbMapping = Pillow.getInstance().getModelConfiguration(referencedClass).getDbMapping();
-				String parentTable = referencedDbMapping.getTableName();
-				String childTable = getTableName();
-				String foreignId = field.getName();
-				
-				String triggerName = "fkd_"+parentTable+"_"+childTable;
-				String trigger = null;
-				if(onDelete == BelongsToOnDelete.SET_NULL){
-					trigger = "CREATE TRIGGER "+triggerName+" BEFORE DELETE ON "+parentTable+" FOR EACH ROW BEGIN UPDATE "+childTable+" SET "+foreignId+"=NULL WHERE "+foreignId+" = OLD.id; END";
-				}else if (onDelete == BelongsToOnDelete.CASCADE){
-					trigger = "CREATE TRIGGER "+triggerName+" BEFORE DELETE ON "+parentTable+" FOR EACH ROW BEGIN DELETE FROM "+childTable+" WHERE "+foreignId+" = OLD.id; END";
-				} else{
-					throw new UnimplementedException();
-				}
-				result.add(trigger);
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		for(Field field:metadata.getBelongsToFields()){
+			ValueType valueType = metadata.getValueType(field);
+			if(valueType.belongsToMode()!=BelongsToOnDelete.NO_ACTION){
+				result.add(createBelongsToTrigger(valueType.belongsTo(), getTableName(), field.getName(), valueType.belongsToMode()));
 			}
 		}
 		return result;
 	}
+
+	/**
+	 * Indexes of dirty_row, belongs to columns, the OrderBy column (with id, as used by paging) and Indexed fields.
+	 * Names are idx_table_kind_key, so indexes of different kinds or tables never share a name, and an index with the
+	 * same columns as a previous one is not repeated.
+	 */
+	@Override
+	public List<String> getIndexes() {
+		String table = getTableName();
+		Map<String, String> indexes = new LinkedHashMap<String, String>();
+		indexes.put("dirty", DBModelController.COLUMN_NAME_DIRTY);
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		for(Field field:metadata.getBelongsToFields()){
+			indexes.put("fk_"+field.getName(), field.getName());
+		}
+		OrderBy orderByAnnotation = metadata.getOrderBy();
+		if(orderByAnnotation!=null){
+			String column = metadata.getOrderByField().getName();
+			boolean noCase = orderByAnnotation.type()==OrderBy.OrderType.ASC_NO_COLLATE || orderByAnnotation.type()==OrderBy.OrderType.DESC_NO_COLLATE;
+			indexes.put("order_"+column, (noCase ? column+" COLLATE NOCASE" : column) + DBUtil.COMMA_SEP + DBModelController.COLUMN_NAME_ID);
+		}
+		Map<String, List<String>> groups = new LinkedHashMap<String, List<String>>();
+		for(Field field:metadata.getStoredFields()){
+			Indexed indexed = metadata.getAnnotation(field, Indexed.class);
+			if(indexed==null)
+				continue;
+			String group = indexed.group().length()==0 ? field.getName() : indexed.group();
+			List<String> columns = groups.get(group);
+			if(columns==null){
+				columns = new ArrayList<String>();
+				groups.put(group, columns);
+			}
+			columns.add(indexed.noCase() ? field.getName()+" COLLATE NOCASE" : field.getName());
+		}
+		for(Map.Entry<String, List<String>> group:groups.entrySet()){
+			indexes.put("group_"+group.getKey(), TextUtils.join(DBUtil.COMMA_SEP, group.getValue()));
+		}
+
+		List<String> result = new ArrayList<String>();
+		Set<String> indexedColumns = new HashSet<String>();
+		for(Map.Entry<String, String> index:indexes.entrySet()){
+			if(!indexedColumns.add(index.getValue()))
+				continue;
+			result.add(DBUtil.createIndex(table, "idx_"+table+"_"+index.getKey(), index.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * Searchable fields
+	 */
+	@Override
+	public List<String> getSearchColumns() {
+		List<String> result = new ArrayList<String>();
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		for(Field field:metadata.getStoredFields()){
+			if(metadata.getAnnotation(field, Searchable.class)!=null)
+				result.add(field.getName());
+		}
+		return result;
+	}
+
+	@Override
+	public List<String> getDateColumns() {
+		return getDateColumns(modelClass, "");
+	}
+
+	private List<String> getDateColumns(Class<?> modelClass, String prefix) {
+		List<String> result = new ArrayList<String>();
+		for(Field field: ReflectionUtil.getStoredFields(modelClass)){
+			Class<?> fieldClass = field.getType();
+			if(ReflectionUtil.isEmbeddable(fieldClass))
+				result.addAll(getDateColumns(fieldClass, prefix+field.getName()+EMBEDDED_MODEL_ATTRIBUTE_SEPARATOR));
+			else if(Date.class.isAssignableFrom(fieldClass) || Calendar.class.isAssignableFrom(fieldClass))
+				result.add(prefix+field.getName());
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the trigger that emulates the on delete action of a belongs to relation
+	 * @param referencedClass parent class
+	 * @param childTable table of the model that has the relation
+	 * @param foreignId column of the child table that stores the parent id
+	 */
+	public static String createBelongsToTrigger(Class<? extends IdentificableModel> referencedClass, String childTable, String foreignId, BelongsToOnDelete onDelete){
+		IDbMapping<?> referencedDbMapping = Pillow.getInstance().getModelConfiguration(referencedClass).getDbMapping();
+		String parentTable = referencedDbMapping.getTableName();
+
+		String triggerName = "fkd_"+parentTable+"_"+childTable;
+		String trigger = null;
+		if(onDelete == BelongsToOnDelete.SET_NULL){
+			trigger = "CREATE TRIGGER "+triggerName+" BEFORE DELETE ON "+parentTable+" FOR EACH ROW BEGIN UPDATE "+childTable+" SET "+foreignId+"=NULL WHERE "+foreignId+" = OLD.id; END";
+		}else if (onDelete == BelongsToOnDelete.CASCADE){
+			trigger = "CREATE TRIGGER "+triggerName+" BEFORE DELETE ON "+parentTable+" FOR EACH ROW BEGIN DELETE FROM "+childTable+" WHERE "+foreignId+" = OLD.id; END";
+		} else{
+			throw new UnimplementedException();
+		}
+		return trigger;
+	}
 	
 //	Not used. Not using Foreign keys now (Check DBUtil)
 //	public List<String> getForeignKeys(){
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.mateuyabar.android.pillow.Pillow;
+import com.mateuyabar.android.pillow.data.sync.DeletedEntries;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Updates the schema of an existing database to the current mappings without losing the stored models, as an
+ * alternative to resetTables on upgrade.
+ * The columns of each table (PRAGMA table_info) are compared with the mapping attributes: new columns are added with
+ * ALTER TABLE ADD COLUMN, and the table is only rebuilt (copying all the rows, dirty ones included) if a column was
+ * removed or changed its type. Missing tables are created, the belongs to triggers are recreated and the indexes
+ * created by pillow that are not used anymore are dropped. The deleted entries table is kept.
+ */
+public class SchemaMigrator {
+	public static final String LOG_ID = Pillow.LOG_ID + " - SchemaMigrator";
+	private static final String INDEX_PREFIX = "idx_";
+	private static final String BELONGS_TO_TRIGGER_PREFIX = "fkd_";
+
+	public static void migrate(SQLiteDatabase db, List<IDbMapping<?>> mappings){
+		if(DBUtil.isDatesAsMillis()){
+			//Needs to convert the values, so it is done before the columns are compared
+			DateColumnsMigration.migrate(db, mappings);
+		}
+		db.beginTransaction();
+		try {
+			if(!DBUtil.existsTable(db, DeletedEntries.TABLE))
+				db.execSQL(DeletedEntries.CREATE_TABLE);
+			//Renaming a table fails if a trigger references a missing one, so they are recreated after the tables
+			for(String name: getSchemaNames(db, "trigger", BELONGS_TO_TRIGGER_PREFIX)){
+				db.execSQL("DROP TRIGGER IF EXISTS "+name);
+			}
+			for(IDbMapping<?> mapping: mappings){
+				migrateTable(db, mapping);
+			}
+			for(IDbMapping<?> mapping: mappings){
+				for(String trigger: mapping.getTriggers()){
+					db.execSQL("DROP TRIGGER IF EXISTS "+DBUtil.getTriggerName(trigger));
+					db.execSQL(trigger);
+				}
+			}
+			migrateIndexes(db, mappings);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	private static void migrateTable(SQLiteDatabase db, IDbMapping<?> mapping){
+		String table = mapping.getTableName();
+		Map<String, String> currentColumns = DBUtil.getColumnTypes(db, table);
+		if(currentColumns.isEmpty()){
+			Log.d(LOG_ID, "creating table "+table);
+			db.execSQL(DBUtil.createTable(mapping));
+			return;
+		}
+
+		Map<String, String> columns = getColumns(mapping);
+		boolean rebuild = false;
+		for(Map.Entry<String, String> current: currentColumns.entrySet()){
+			String column = current.getKey();
+			if(column.equals(DBModelController.COLUMN_NAME_ID))
+				continue;
+			String type = columns.get(column);
+			if(type==null || !normalizeType(type).equals(normalizeType(current.getValue()))){
+				rebuild = true;
+				break;
+			}
+		}
+		if(rebuild){
+			Log.d(LOG_ID, "rebuilding table "+table);
+			//Triggers of the table are dropped, the search index ones are recreated by SearchIndex.update
+			DBUtil.rebuildTable(db, mapping, Collections.<String, String>emptyMap());
+			return;
+		}
+		for(Map.Entry<String, String> column: columns.entrySet()){
+			if(!currentColumns.containsKey(column.getKey())){
+				Log.d(LOG_ID, "adding column "+column.getKey()+" to "+table);
+				db.execSQL("ALTER TABLE "+table+" ADD COLUMN "+column.getKey()+" "+column.getValue().trim());
+			}
+		}
+	}
+
+	/**
+	 * Drops the pillow indexes (idx_table_...) not defined anymore by the mappings. Missing indexes are created by
+	 * AbstractDBHelper.createIndexes.
+	 */
+	private static void migrateIndexes(SQLiteDatabase db, List<IDbMapping<?>> mappings){
+		Set<String> names = new HashSet<String>();
+		names.add(getIndexName(DeletedEntries.CREATE_INDEX));
+		List<String> prefixes = new ArrayList<String>();
+		for(IDbMapping<?> mapping: mappings){
+			prefixes.add(INDEX_PREFIX+mapping.getTableName()+"_");
+			for(String index: mapping.getIndexes()){
+				names.add(getIndexName(index));
+			}
+		}
+		for(String name: getSchemaNames(db, "index", INDEX_PREFIX)){
+			if(names.contains(name))
+				continue;
+			for(String prefix: prefixes){
+				if(name.startsWith(prefix)){
+					Log.d(LOG_ID, "dropping index "+name);
+					db.execSQL("DROP INDEX IF EXISTS "+name);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return column name to type of the columns of the mapping, except the id
+	 */
+	static Map<String, String> getColumns(IDbMapping<?> mapping){
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		result.put(DBModelController.COLUMN_NAME_DIRTY, DBUtil.INT_TYPE);
+		result.put(DBModelController.COLUMN_UPDATED_AT, DBUtil.TIMESTAMP_TYPE);
+		result.put(DBModelController.COLUMN_CREATED_AT, DBUtil.TIMESTAMP_TYPE);
+		for(String[] attribute: mapping.getAttributes()){
+			result.put(attribute[0], attribute[1]);
+		}
+		return result;
+	}
+
+	private static String normalizeType(String type){
+		return type==null ? "" : type.trim().toUpperCase(Locale.US);
+	}
+
+	/**
+	 * @param index CREATE INDEX IF NOT EXISTS name ... statement
+	 */
+	private static String getIndexName(String index){
+		return index.trim().split("\\s+")[5];
+	}
+
+	private static List<String> getSchemaNames(SQLiteDatabase db, String type, String prefix){
+		List<String> result = new ArrayList<String>();
+		Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = ? AND substr(name, 1, ?) = ?", new String[]{type, String.valueOf(prefix.length()), prefix});
+		try {
+			while(cursor.moveToNext()){
+				result.add(cursor.getString(0));
+			}
+		} finally {
+			cursor.close();
+		}
+		return result;
+	}
+}
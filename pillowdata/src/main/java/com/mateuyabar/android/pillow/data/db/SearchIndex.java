@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import com.mateuyabar.android.pillow.Pillow;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Full text search index of the Searchable columns of a table.
+ * It is a FTS3 table (table_fts) holding the id and the searchable text of each row. Rows are keyed on the id, as the
+ * implicit rowid of the table is not stable (VACUUM may renumber it). Triggers on the table keep it in sync, so every
+ * write (including cacheAll bulk deletes and belongs to cascades) updates it in the same transaction.
+ * The unicode61 or icu tokenizer is used where available, so non ASCII letters are case folded too; the default simple
+ * tokenizer only folds ASCII.
+ */
+public class SearchIndex {
+	public static final String LOG_ID = Pillow.LOG_ID + " - SearchIndex";
+	public static final String TABLE_SUFFIX = "_fts";
+	static final String ID_COLUMN = DBModelController.COLUMN_NAME_ID;
+	static final String CONTENT_COLUMN = "content";
+	/**
+	 * Tokenizers tried in order, before falling back to the default one
+	 */
+	static final String[] TOKENIZERS = {"unicode61", "icu"};
+
+	/**
+	 * Creates the search index of the mapping if missing or outdated (searchable columns changed or triggers dropped
+	 * by a table rebuild), filling it with the existing rows. Drops it if the model is not searchable anymore.
+	 */
+	public static void update(SQLiteDatabase db, IDbMapping<?> mapping){
+		String table = mapping.getTableName();
+		List<String> columns = mapping.getSearchColumns();
+		boolean exists = DBUtil.existsInSchema(db, "table", getTableName(table));
+		if(columns.isEmpty()){
+			if(exists)
+				drop(db, table);
+			return;
+		}
+		String[] triggers = createTriggers(table, columns);
+		if(exists && isCurrent(db, triggers))
+			return;
+
+		Log.d(LOG_ID, "creating search index of "+table+": "+columns);
+		db.beginTransaction();
+		try {
+			drop(db, table);
+			createTable(db, table);
+			db.execSQL("INSERT INTO "+getTableName(table)+" ("+ID_COLUMN+", "+CONTENT_COLUMN+") SELECT "+ID_COLUMN+", "+createContent("", columns)+" FROM "+table);
+			for(String trigger: triggers){
+				db.execSQL(trigger);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	public static void drop(SQLiteDatabase db, String table){
+		for(String trigger: getTriggerNames(table)){
+			db.execSQL("DROP TRIGGER IF EXISTS "+trigger);
+		}
+		db.execSQL("DROP TABLE IF EXISTS "+getTableName(table));
+	}
+
+	public static String getTableName(String table){
+		return table + TABLE_SUFFIX;
+	}
+
+	/**
+	 * @return selection of the rows of table matching the query, with a single argument (see createMatch)
+	 */
+	public static String createSelection(String table){
+		return ID_COLUMN+" IN (SELECT "+ID_COLUMN+" FROM "+getTableName(table)+" WHERE "+CONTENT_COLUMN+" MATCH ?)";
+	}
+
+	/**
+	 * Converts a user query into a FTS query where every word must match the beginning of a word of the row.
+	 * @return the match argument, or null if the query has no words
+	 */
+	public static String createMatch(String query){
+		StringBuilder result = new StringBuilder();
+		for(String word: query.toLowerCase(Locale.US).split("[^\\p{L}\\p{Nd}]+")){
+			if(word.length()==0)
+				continue;
+			if(result.length()>0)
+				result.append(' ');
+			result.append(word).append('*');
+		}
+		return result.length()==0 ? null : result.toString();
+	}
+
+	/**
+	 * Creates the FTS table with the first available tokenizer of TOKENIZERS
+	 */
+	private static void createTable(SQLiteDatabase db, String table){
+		String create = "CREATE VIRTUAL TABLE "+getTableName(table)+" USING fts3("+ID_COLUMN+", "+CONTENT_COLUMN;
+		for(String tokenizer: TOKENIZERS){
+			try {
+				db.execSQL(create+", tokenize="+tokenizer+")");
+				return;
+			} catch (SQLiteException e) {
+				Log.d(LOG_ID, "tokenizer "+tokenizer+" not available");
+			}
+		}
+		db.execSQL(create+")");
+	}
+
+	private static String[] getTriggerNames(String table){
+		String prefix = getTableName(table);
+		return new String[]{prefix+"_ai", prefix+"_au", prefix+"_ad"};
+	}
+
+	private static String[] createTriggers(String table, List<String> columns){
+		String fts = getTableName(table);
+		String[] names = getTriggerNames(table);
+		//the id is updated too, as the index is keyed on it
+		StringBuilder updatedColumns = new StringBuilder(ID_COLUMN);
+		for(String column: columns){
+			updatedColumns.append(DBUtil.COMMA_SEP).append(column);
+		}
+		return new String[]{
+			"CREATE TRIGGER "+names[0]+" AFTER INSERT ON "+table+" FOR EACH ROW BEGIN INSERT INTO "+fts+" ("+ID_COLUMN+", "+CONTENT_COLUMN+") VALUES (NEW."+ID_COLUMN+", "+createContent("NEW.", columns)+"); END",
+			"CREATE TRIGGER "+names[1]+" AFTER UPDATE OF "+updatedColumns+" ON "+table+" FOR EACH ROW BEGIN UPDATE "+fts+" SET "+ID_COLUMN+" = NEW."+ID_COLUMN+", "+CONTENT_COLUMN+" = "+createContent("NEW.", columns)+" WHERE "+ID_COLUMN+" = OLD."+ID_COLUMN+"; END",
+			"CREATE TRIGGER "+names[2]+" AFTER DELETE ON "+table+" FOR EACH ROW BEGIN DELETE FROM "+fts+" WHERE "+ID_COLUMN+" = OLD."+ID_COLUMN+"; END"
+		};
+	}
+
+	/**
+	 * @return expression concatenating the columns, with the given prefix (NEW. in triggers)
+	 */
+	private static String createContent(String prefix, List<String> columns){
+		StringBuilder result = new StringBuilder();
+		for(String column: columns){
+			if(result.length()>0)
+				result.append(" || ' ' || ");
+			result.append("coalesce(").append(prefix).append(column).append(", '')");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @return true if all the triggers exist with the given statements
+	 */
+	private static boolean isCurrent(SQLiteDatabase db, String[] triggers){
+		for(String trigger: triggers){
+			Cursor cursor = db.rawQuery("SELECT sql FROM sqlite_master WHERE type = 'trigger' AND name = ?", new String[]{DBUtil.getTriggerName(trigger)});
+			try {
+				if(!cursor.moveToNext() || !trigger.equals(cursor.getString(0)))
+					return false;
+			} finally {
+				cursor.close();
+			}
+		}
+		return true;
+	}
+}
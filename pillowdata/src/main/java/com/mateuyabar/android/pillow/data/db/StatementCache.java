@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled statements by sql, so statements executed many times are only parsed once.
+ * Statements are only kept on the DbExecutor writer threads (see DbExecutor.isWriterThread): other threads, like the
+ * readers that end when idle, compile a statement on every acquire and close it on release, so no statement is left
+ * open by a finished thread.
+ * Statements are confined to the thread that got them, so a statement can be bound and executed without any lock
+ * (a lock held while executing could wait for the connection held by the transaction of another thread). A statement
+ * must not be passed to other threads.
+ * Kept statements are closed when the least recently used ones of the thread are evicted or when the database instance
+ * changes.
+ */
+class StatementCache {
+	private final int maxSize;
+	private final ThreadLocal<Statements> statements = new ThreadLocal<Statements>();
+
+	StatementCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the compiled statement of the sql on db for the current thread, without bindings. It must be released
+	 * after executing it.
+	 */
+	SQLiteStatement acquire(SQLiteDatabase db, String sql) {
+		if(!DbExecutor.isWriterThread())
+			return db.compileStatement(sql);
+		Statements threadStatements = statements.get();
+		if(threadStatements==null){
+			threadStatements = new Statements(maxSize);
+			statements.set(threadStatements);
+		}
+		return threadStatements.get(db, sql);
+	}
+
+	/**
+	 * Closes the statement if it is not kept (acquired on a thread other than the writer one)
+	 */
+	void release(SQLiteStatement statement) {
+		if(!DbExecutor.isWriterThread())
+			statement.close();
+	}
+
+	/**
+	 * Closes the statements of the current thread
+	 */
+	void clear() {
+		Statements threadStatements = statements.get();
+		if(threadStatements!=null)
+			threadStatements.clear();
+	}
+
+	private static class Statements extends LinkedHashMap<String, SQLiteStatement> {
+		private final int maxSize;
+		private SQLiteDatabase db;
+
+		Statements(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+			if(size()<=maxSize)
+				return false;
+			eldest.getValue().close();
+			return true;
+		}
+
+		SQLiteStatement get(SQLiteDatabase db, String sql) {
+			if(this.db!=db || !db.isOpen()){
+				clear();
+				this.db = db;
+			}
+			SQLiteStatement statement = super.get(sql);
+			if(statement==null){
+				statement = db.compileStatement(sql);
+				put(sql, statement);
+			} else {
+				statement.clearBindings();
+			}
+			return statement;
+		}
+
+		@Override
+		public void clear() {
+			for(SQLiteStatement statement: values()){
+				statement.close();
+			}
+			super.clear();
+			db = null;
+		}
+	}
+}
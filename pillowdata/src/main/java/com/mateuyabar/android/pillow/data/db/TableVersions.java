@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.data.db;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counter of each table, incremented on every write through DBModelController (and when the tables are
+ * reset). Used to know if a cached query result is still valid.
+ */
+public class TableVersions {
+	private static final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+	/**
+	 * Tables modified inside a DbExecutor batch transaction of the current thread, incremented again when it ends
+	 * (until the commit, other threads may read and cache the previous data with the new version)
+	 */
+	private static final ThreadLocal<Set<String>> transactionTables = new ThreadLocal<Set<String>>();
+
+	public static long get(String table) {
+		return getCounter(table).get();
+	}
+
+	public static void increment(String table) {
+		getCounter(table).incrementAndGet();
+	}
+
+	/**
+	 * @param inBatch if the write is inside a DbExecutor batch transaction (DbExecutor.isBatchTransaction()), so it is
+	 * incremented again on transactionEnded. Other transactions must increment again after they end.
+	 */
+	public static void increment(String table, boolean inBatch) {
+		increment(table);
+		if (inBatch) {
+			Set<String> tables = transactionTables.get();
+			if (tables == null) {
+				tables = new HashSet<String>();
+				transactionTables.set(tables);
+			}
+			tables.add(table);
+		}
+	}
+
+	/**
+	 * Increments all the tables (used when the tables are dropped or reset)
+	 */
+	public static void incrementAll() {
+		for (AtomicLong version : versions.values()) {
+			version.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Repeats the increments done during the batch transaction that has just ended on the current thread. Called by
+	 * DbExecutor after committing (or rolling back) a batch.
+	 */
+	public static void transactionEnded() {
+		Set<String> tables = transactionTables.get();
+		if (tables == null)
+			return;
+		transactionTables.remove();
+		for (String table : tables) {
+			increment(table);
+		}
+	}
+
+	private static AtomicLong getCounter(String table) {
+		AtomicLong version = versions.get(table);
+		if (version == null) {
+			AtomicLong newVersion = new AtomicLong();
+			version = versions.putIfAbsent(table, newVersion);
+			if (version == null)
+				version = newVersion;
+		}
+		return version;
+	}
+}
@@ -4,7 +4,6 @@ import android.database.Cursor;
 
 import com.mateuyabar.android.pillow.data.db.DBUtil;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
 @Deprecated
@@ -16,22 +15,27 @@ public class CalendarJava2Db extends BaseSingleClassNullableJava2DbType<Calendar
 
     @Override
     protected Object javaToDbNotNull(Calendar date) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat(DBUtil.DATE_TIME_STRING_FORMAT);
-        return dateFormat.format(date.getTime());
+        if(DBUtil.isDatesAsMillis())
+            return date.getTimeInMillis();
+        return DateTimeCodec.format(date.getTimeInMillis());
     }
 
 
 
     @Override
     public Calendar dbToJavaNotNull(Cursor cursor, int columnIndex) {
-        String date = cursor.getString(columnIndex);
         Calendar cal = Calendar.getInstance();
-        cal.setTime(DateJava2Db.dbToDate(date));
+        if(DBUtil.isDatesAsMillis()){
+            cal.setTimeInMillis(cursor.getLong(columnIndex));
+        } else {
+            String date = cursor.getString(columnIndex);
+            cal.setTime(DateJava2Db.dbToDate(date));
+        }
         return cal;
     }
 
     @Override
     public String getDbType() {
-        return  DBUtil.CALENDAR_TYPE;
+        return  DBUtil.getDateType();
     }
 }
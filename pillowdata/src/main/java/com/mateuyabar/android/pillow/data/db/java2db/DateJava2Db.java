@@ -4,8 +4,6 @@ import android.database.Cursor;
 
 import com.mateuyabar.android.pillow.data.db.DBUtil;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 @Deprecated
@@ -17,29 +15,25 @@ public class DateJava2Db extends BaseSingleClassNullableJava2DbType<Date> {
 
     @Override
     protected Object javaToDbNotNull(Date value) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat(DBUtil.DATE_TIME_STRING_FORMAT);
-        return dateFormat.format(value);
+        if(DBUtil.isDatesAsMillis())
+            return value.getTime();
+        return DateTimeCodec.format(value);
     }
 
     @Override
     protected Date dbToJavaNotNull(Cursor cursor, int columnIndex) {
+        if(DBUtil.isDatesAsMillis())
+            return new Date(cursor.getLong(columnIndex));
         String date = cursor.getString(columnIndex);
         return dbToDate(date);
     }
 
     @Override
     public String getDbType() {
-        return  DBUtil.CALENDAR_TYPE;
+        return  DBUtil.getDateType();
     }
 
     public static Date dbToDate(String date){
-        if(date==null) return null;
-        SimpleDateFormat dateFormat = new SimpleDateFormat(DBUtil.DATE_TIME_STRING_FORMAT);
-        try {
-            return dateFormat.parse(date);
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return null;
-        }
+        return DateTimeCodec.parse(date);
     }
 }
@@ -0,0 +1,127 @@
+package com.mateuyabar.android.pillow.data.db.java2db;
+
+import com.mateuyabar.android.pillow.data.db.DBUtil;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Thread safe formatter and parser of DBUtil.DATE_TIME_STRING_FORMAT (yyyy-MM-dd HH:mm:ss, default time zone).
+ * Uses a calendar per thread instead of creating a SimpleDateFormat per value. Values that are not in the
+ * expected format are parsed with SimpleDateFormat, as before.
+ */
+public class DateTimeCodec {
+    private static final int LENGTH = 19;
+
+    private static final ThreadLocal<Calendar> calendars = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
+
+    private static final ThreadLocal<SimpleDateFormat> formats = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(DBUtil.DATE_TIME_STRING_FORMAT);
+        }
+    };
+
+    public static String format(Date date) {
+        if (date == null)
+            return null;
+        return format(date.getTime());
+    }
+
+    public static String format(long millis) {
+        Calendar calendar = getCalendar();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year > 9999 || calendar.get(Calendar.ERA) != GregorianCalendar.AD)
+            return getFormat().format(new Date(millis));
+
+        char[] chars = new char[LENGTH];
+        putDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        putDigits(chars, 5, calendar.get(Calendar.MONTH) + 1, 2);
+        chars[7] = '-';
+        putDigits(chars, 8, calendar.get(Calendar.DAY_OF_MONTH), 2);
+        chars[10] = ' ';
+        putDigits(chars, 11, calendar.get(Calendar.HOUR_OF_DAY), 2);
+        chars[13] = ':';
+        putDigits(chars, 14, calendar.get(Calendar.MINUTE), 2);
+        chars[16] = ':';
+        putDigits(chars, 17, calendar.get(Calendar.SECOND), 2);
+        return new String(chars);
+    }
+
+    /**
+     * @return the parsed date, or null if value is null or can not be parsed
+     */
+    public static Date parse(String value) {
+        if (value == null)
+            return null;
+        if (value.length() == LENGTH && value.charAt(4) == '-' && value.charAt(7) == '-' && value.charAt(10) == ' '
+                && value.charAt(13) == ':' && value.charAt(16) == ':') {
+            int year = parseDigits(value, 0, 4);
+            int month = parseDigits(value, 5, 2);
+            int day = parseDigits(value, 8, 2);
+            int hour = parseDigits(value, 11, 2);
+            int minute = parseDigits(value, 14, 2);
+            int second = parseDigits(value, 17, 2);
+            if ((year | month | day | hour | minute | second) >= 0) {
+                Calendar calendar = getCalendar();
+                calendar.clear();
+                calendar.set(year, month - 1, day, hour, minute, second);
+                return calendar.getTime();
+            }
+        }
+        try {
+            return getFormat().parse(value);
+        } catch (ParseException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static Calendar getCalendar() {
+        Calendar calendar = calendars.get();
+        TimeZone timeZone = TimeZone.getDefault();
+        if (!calendar.getTimeZone().getID().equals(timeZone.getID()))
+            calendar.setTimeZone(timeZone);
+        return calendar;
+    }
+
+    private static SimpleDateFormat getFormat() {
+        SimpleDateFormat format = formats.get();
+        TimeZone timeZone = TimeZone.getDefault();
+        if (!format.getTimeZone().getID().equals(timeZone.getID()))
+            format.setTimeZone(timeZone);
+        return format;
+    }
+
+    private static void putDigits(char[] chars, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; --i) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * @return the parsed number, or -1 if there is a non digit character
+     */
+    private static int parseDigits(String value, int offset, int digits) {
+        int result = 0;
+        for (int i = offset; i < offset + digits; ++i) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                return -1;
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+}
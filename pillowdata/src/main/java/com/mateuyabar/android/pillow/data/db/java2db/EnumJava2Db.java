@@ -6,10 +6,15 @@ import com.mateuyabar.android.pillow.data.db.DBUtil;
 import com.mateuyabar.android.pillow.data.models.IdentificableEnum;
 import com.mateuyabar.util.exceptions.BreakFastException;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Created by mateuyabar on 17/11/15.
  */
 public class EnumJava2Db<T> extends BaseJava2DbType {
+    Map<Class<?>, Object[]> enumConstants = new ConcurrentHashMap<>();
+
     @Override
     public boolean accepts(Class<?> fieldClass) {
         return Enum.class.isAssignableFrom(fieldClass);
@@ -29,18 +34,23 @@ public class EnumJava2Db<T> extends BaseJava2DbType {
     public  T dbToJava(Cursor cursor, int columnIndex,  Class<?> enumClass) {
         if (cursor.isNull (columnIndex))
             return null;
-        int id = cursor.getInt(columnIndex);
-        Object[] values = enumClass.getEnumConstants();
-        if(enumClass.isAssignableFrom(IdentificableEnum.class)){
-            for(Object value:values){
-                if(((IdentificableEnum)value).getId() == id){
-                    return (T) value;
-                }
-            }
-        } else {
-            return (T) values[id];
+        int ordinal = cursor.getInt(columnIndex);
+        Object[] values = getEnumConstants(enumClass);
+        if(ordinal<0 || ordinal>=values.length)
+            throw new BreakFastException("Invalid value " + ordinal + " for " + enumClass);
+        return (T) values[ordinal];
+    }
+
+    /**
+     * Class.getEnumConstants() clones the constants on every call, so they are cached per class
+     */
+    private Object[] getEnumConstants(Class<?> enumClass){
+        Object[] values = enumConstants.get(enumClass);
+        if(values==null){
+            values = enumClass.getEnumConstants();
+            enumConstants.put(enumClass, values);
         }
-        throw new BreakFastException();
+        return values;
     }
 
     @Override
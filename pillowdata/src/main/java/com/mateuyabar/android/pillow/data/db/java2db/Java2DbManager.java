@@ -4,9 +4,20 @@ import android.database.Cursor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Java2DbManager {
+    /**
+     * Value stored in resolved when no conversor accepts the class
+     */
+    private static final Object NO_CONVERSOR = new Object();
+
     List<Java2DbType> java2DbTypes = new ArrayList<>();
+    /**
+     * Conversor (or NO_CONVERSOR) resolved for each class
+     */
+    Map<Class<?>, Object> resolved = new ConcurrentHashMap<>();
 
     public Java2DbManager(){
         java2DbTypes.add(new BooleanJava2Db());
@@ -18,12 +29,21 @@ public class Java2DbManager {
     }
 
     public Java2DbType get(Class<?> clazz){
+        Object conversor = resolved.get(clazz);
+        if(conversor==null){
+            conversor = find(clazz);
+            resolved.put(clazz, conversor);
+        }
+        return conversor==NO_CONVERSOR ? null : (Java2DbType) conversor;
+    }
+
+    private Object find(Class<?> clazz){
         for(int i=0; i< java2DbTypes.size(); ++i){
             Java2DbType conversor = java2DbTypes.get(i);
             if(conversor.accepts(clazz))
                 return conversor;
         }
-        return null;
+        return NO_CONVERSOR;
     }
 
     public String getDbType(Class<?> clazz){
@@ -9,5 +9,6 @@ public interface Java2DbType {
     boolean accepts(Class<?> fieldClass);
     Object javaToDb(Object value);
     Object dbToJava(Cursor cursor, String name,  Class<?> fieldClass);
+    Object dbToJava(Cursor cursor, int columnIndex,  Class<?> fieldClass);
     String getDbType();
 }
@@ -0,0 +1,328 @@
+package com.mateuyabar.android.pillow.data.db.java2db;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteProgram;
+
+import com.mateuyabar.android.pillow.data.db.DBUtil;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads, writes and binds a numeric or boolean field directly (Field.getInt, setInt...), so primitive fields are never
+ * boxed. Used for int, long, double, float, short and boolean fields and their wrappers.
+ * Wrapper fields are stored as NULL when null, and NULL columns are read as null.
+ */
+public abstract class PrimitiveCodec {
+    private static final Map<Class<?>, PrimitiveCodec> codecs = new HashMap<>();
+
+    static {
+        register(new IntCodec(true), new IntCodec(false), int.class, Integer.class);
+        register(new LongCodec(true), new LongCodec(false), long.class, Long.class);
+        register(new DoubleCodec(true), new DoubleCodec(false), double.class, Double.class);
+        register(new FloatCodec(true), new FloatCodec(false), float.class, Float.class);
+        register(new ShortCodec(true), new ShortCodec(false), short.class, Short.class);
+        register(new BooleanCodec(true), new BooleanCodec(false), boolean.class, Boolean.class);
+    }
+
+    private static void register(PrimitiveCodec primitiveCodec, PrimitiveCodec wrapperCodec, Class<?> primitiveClass, Class<?> wrapperClass) {
+        codecs.put(primitiveClass, primitiveCodec);
+        codecs.put(wrapperClass, wrapperCodec);
+    }
+
+    /**
+     * @return the codec of the field class, or null if it is not a primitive or wrapper class
+     */
+    public static PrimitiveCodec get(Class<?> fieldClass) {
+        return codecs.get(fieldClass);
+    }
+
+    final boolean primitive;
+
+    PrimitiveCodec(boolean primitive) {
+        this.primitive = primitive;
+    }
+
+    public abstract String getDbType();
+
+    /**
+     * Sets the field of model with the value of the column
+     */
+    public void read(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException {
+        if (primitive)
+            readPrimitive(cursor, columnIndex, field, model);
+        else
+            field.set(model, cursor.isNull(columnIndex) ? null : readWrapper(cursor, columnIndex));
+    }
+
+    /**
+     * Binds the value of the field of model
+     */
+    public void bind(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException {
+        if (primitive) {
+            bindPrimitive(statement, index, field, model);
+        } else {
+            Object value = field.get(model);
+            if (value == null)
+                statement.bindNull(index);
+            else
+                bindWrapper(statement, index, value);
+        }
+    }
+
+    /**
+     * Puts the value of the field of model in values (nothing if null)
+     */
+    public void put(ContentValues values, String key, Field field, Object model) throws IllegalAccessException {
+        if (primitive) {
+            putPrimitive(values, key, field, model);
+        } else {
+            Object value = field.get(model);
+            if (value != null)
+                DBUtil.put(values, key, toDb(value));
+        }
+    }
+
+    protected abstract void readPrimitive(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException;
+
+    protected abstract Object readWrapper(Cursor cursor, int columnIndex);
+
+    protected abstract void bindPrimitive(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException;
+
+    protected abstract void bindWrapper(SQLiteProgram statement, int index, Object value);
+
+    protected abstract void putPrimitive(ContentValues values, String key, Field field, Object model) throws IllegalAccessException;
+
+    /**
+     * @return the wrapper value as stored in ContentValues
+     */
+    protected Object toDb(Object value) {
+        return value;
+    }
+
+    static class IntCodec extends PrimitiveCodec {
+        IntCodec(boolean primitive) {
+            super(primitive);
+        }
+
+        @Override
+        public String getDbType() {
+            return DBUtil.INT_TYPE;
+        }
+
+        @Override
+        protected void readPrimitive(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException {
+            field.setInt(model, cursor.getInt(columnIndex));
+        }
+
+        @Override
+        protected Object readWrapper(Cursor cursor, int columnIndex) {
+            return cursor.getInt(columnIndex);
+        }
+
+        @Override
+        protected void bindPrimitive(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException {
+            statement.bindLong(index, field.getInt(model));
+        }
+
+        @Override
+        protected void bindWrapper(SQLiteProgram statement, int index, Object value) {
+            statement.bindLong(index, (Integer) value);
+        }
+
+        @Override
+        protected void putPrimitive(ContentValues values, String key, Field field, Object model) throws IllegalAccessException {
+            values.put(key, field.getInt(model));
+        }
+    }
+
+    static class LongCodec extends PrimitiveCodec {
+        LongCodec(boolean primitive) {
+            super(primitive);
+        }
+
+        @Override
+        public String getDbType() {
+            return DBUtil.LONG_TYPE;
+        }
+
+        @Override
+        protected void readPrimitive(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException {
+            field.setLong(model, cursor.getLong(columnIndex));
+        }
+
+        @Override
+        protected Object readWrapper(Cursor cursor, int columnIndex) {
+            return cursor.getLong(columnIndex);
+        }
+
+        @Override
+        protected void bindPrimitive(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException {
+            statement.bindLong(index, field.getLong(model));
+        }
+
+        @Override
+        protected void bindWrapper(SQLiteProgram statement, int index, Object value) {
+            statement.bindLong(index, (Long) value);
+        }
+
+        @Override
+        protected void putPrimitive(ContentValues values, String key, Field field, Object model) throws IllegalAccessException {
+            values.put(key, field.getLong(model));
+        }
+    }
+
+    static class DoubleCodec extends PrimitiveCodec {
+        DoubleCodec(boolean primitive) {
+            super(primitive);
+        }
+
+        @Override
+        public String getDbType() {
+            return DBUtil.DOUBLE_TYPE;
+        }
+
+        @Override
+        protected void readPrimitive(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException {
+            field.setDouble(model, cursor.getDouble(columnIndex));
+        }
+
+        @Override
+        protected Object readWrapper(Cursor cursor, int columnIndex) {
+            return cursor.getDouble(columnIndex);
+        }
+
+        @Override
+        protected void bindPrimitive(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException {
+            statement.bindDouble(index, field.getDouble(model));
+        }
+
+        @Override
+        protected void bindWrapper(SQLiteProgram statement, int index, Object value) {
+            statement.bindDouble(index, (Double) value);
+        }
+
+        @Override
+        protected void putPrimitive(ContentValues values, String key, Field field, Object model) throws IllegalAccessException {
+            values.put(key, field.getDouble(model));
+        }
+    }
+
+    static class FloatCodec extends PrimitiveCodec {
+        FloatCodec(boolean primitive) {
+            super(primitive);
+        }
+
+        @Override
+        public String getDbType() {
+            return DBUtil.DOUBLE_TYPE;
+        }
+
+        @Override
+        protected void readPrimitive(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException {
+            field.setFloat(model, cursor.getFloat(columnIndex));
+        }
+
+        @Override
+        protected Object readWrapper(Cursor cursor, int columnIndex) {
+            return cursor.getFloat(columnIndex);
+        }
+
+        @Override
+        protected void bindPrimitive(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException {
+            statement.bindDouble(index, field.getFloat(model));
+        }
+
+        @Override
+        protected void bindWrapper(SQLiteProgram statement, int index, Object value) {
+            statement.bindDouble(index, (Float) value);
+        }
+
+        @Override
+        protected void putPrimitive(ContentValues values, String key, Field field, Object model) throws IllegalAccessException {
+            values.put(key, field.getFloat(model));
+        }
+    }
+
+    static class ShortCodec extends PrimitiveCodec {
+        ShortCodec(boolean primitive) {
+            super(primitive);
+        }
+
+        @Override
+        public String getDbType() {
+            return DBUtil.INT_TYPE;
+        }
+
+        @Override
+        protected void readPrimitive(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException {
+            field.setShort(model, cursor.getShort(columnIndex));
+        }
+
+        @Override
+        protected Object readWrapper(Cursor cursor, int columnIndex) {
+            return cursor.getShort(columnIndex);
+        }
+
+        @Override
+        protected void bindPrimitive(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException {
+            statement.bindLong(index, field.getShort(model));
+        }
+
+        @Override
+        protected void bindWrapper(SQLiteProgram statement, int index, Object value) {
+            statement.bindLong(index, (Short) value);
+        }
+
+        @Override
+        protected void putPrimitive(ContentValues values, String key, Field field, Object model) throws IllegalAccessException {
+            values.put(key, field.getShort(model));
+        }
+    }
+
+    /**
+     * Stored as DBUtil.BOOLEAN_TRUE / BOOLEAN_FALSE, as BooleanJava2Db
+     */
+    static class BooleanCodec extends PrimitiveCodec {
+        BooleanCodec(boolean primitive) {
+            super(primitive);
+        }
+
+        @Override
+        public String getDbType() {
+            return DBUtil.BOOLEAN_TYPE;
+        }
+
+        @Override
+        protected void readPrimitive(Cursor cursor, int columnIndex, Field field, Object model) throws IllegalAccessException {
+            field.setBoolean(model, cursor.getInt(columnIndex) == DBUtil.BOOLEAN_TRUE);
+        }
+
+        @Override
+        protected Object readWrapper(Cursor cursor, int columnIndex) {
+            return cursor.getInt(columnIndex) == DBUtil.BOOLEAN_TRUE ? Boolean.TRUE : Boolean.FALSE;
+        }
+
+        @Override
+        protected void bindPrimitive(SQLiteProgram statement, int index, Field field, Object model) throws IllegalAccessException {
+            statement.bindLong(index, field.getBoolean(model) ? DBUtil.BOOLEAN_TRUE : DBUtil.BOOLEAN_FALSE);
+        }
+
+        @Override
+        protected void bindWrapper(SQLiteProgram statement, int index, Object value) {
+            statement.bindLong(index, (Boolean) value ? DBUtil.BOOLEAN_TRUE : DBUtil.BOOLEAN_FALSE);
+        }
+
+        @Override
+        protected void putPrimitive(ContentValues values, String key, Field field, Object model) throws IllegalAccessException {
+            values.put(key, field.getBoolean(model) ? DBUtil.BOOLEAN_TRUE : DBUtil.BOOLEAN_FALSE);
+        }
+
+        @Override
+        protected Object toDb(Object value) {
+            return (Boolean) value ? DBUtil.BOOLEAN_TRUE : DBUtil.BOOLEAN_FALSE;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import com.mateuyabar.android.pillow.PillowConfigXml;
 import com.mateuyabar.android.pillow.PillowError;
 import com.mateuyabar.android.pillow.data.IRestDataSource;
 import com.mateuyabar.android.pillow.data.core.IPillowResult;
+import com.mateuyabar.android.pillow.data.core.PillowListResult;
 import com.mateuyabar.android.pillow.data.core.PillowResultListener;
 import com.mateuyabar.android.pillow.data.db.MultiThreadDbDataSource.OperationRunnable;
 import com.mateuyabar.android.pillow.data.rest.IAuthenticationController.AuthenticationData;
@@ -38,7 +39,9 @@ import com.mateuyabar.android.pillow.data.rest.IAuthenticationController.NullAut
 import com.mateuyabar.android.pillow.data.rest.requests.GsonCollectionRequest;
 import com.mateuyabar.android.pillow.data.rest.requests.GsonRequest;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -177,6 +180,18 @@ public class RestDataSource<T> implements IRestDataSource<T> {
         return executeOperation(model, route, null);
     }
 
+    /**
+     * There is no bulk show on the rest api: a show request is done for each model
+     */
+    @Override
+    public IPillowResult<List<T>> showAll(List<T> models) {
+        List<IPillowResult<T>> results = new ArrayList<IPillowResult<T>>();
+        for(T model: models){
+            results.add(show(model));
+        }
+        return new PillowListResult<T>(results);
+    }
+
     @Override
     public IPillowResult<T> create(T model) {
         Route route = restMapping.getCreatePath(model);
@@ -62,6 +62,19 @@ public class SingleInstanceKeyValueDataSource<T extends IdentificableModel> impl
         return new PillowResult<>(model);
     }
 
+    @Override
+    public IPillowResult<List<T>> showAll(List<T> models) {
+        T model = synchronGet();
+        List<T> result = new ArrayList<>();
+        for(T idModel: models){
+            if(! checkIsCurrentModel(idModel)){
+                throw new BreakFastException();
+            }
+            result.add(model);
+        }
+        return new PillowResult<>(result);
+    }
+
     @Override
     public IPillowResult<T> create(T model) {
         if(synchronExists() && breakIfTryToCreteMultiple){
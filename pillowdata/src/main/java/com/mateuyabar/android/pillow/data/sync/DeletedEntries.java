@@ -25,11 +25,13 @@ import android.database.sqlite.SQLiteOpenHelper;
 
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.data.db.DBUtil;
-import com.mateuyabar.android.util.CursorUtil;
-import com.mateuyabar.util.exceptions.BreakFastException;
+import com.mateuyabar.android.pillow.util.reflection.ReflectionUtil;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -49,8 +51,21 @@ public class DeletedEntries<T extends IdentificableModel> {
 					CLASS_COLUMN + DBUtil.STRING_TYPE +
 			");";
 
+	public static final String CREATE_INDEX = DBUtil.createIndex(TABLE, "idx_" + TABLE + "_" + CLASS_COLUMN + "_" + ID_COLUMN, CLASS_COLUMN + DBUtil.COMMA_SEP + ID_COLUMN);
+
+	/**
+	 * Incremented when the tables are dropped, so the loaded ids are discarded
+	 */
+	private static final AtomicInteger generation = new AtomicInteger();
+
 	SQLiteOpenHelper dbHelper;
 	Class<T> modelClass;
+	/**
+	 * Ids deleted of this class, loaded on first use. It may contain ids whose insert was rolled back, so
+	 * found ids are confirmed on the database.
+	 */
+	Set<String> deletedIds;
+	int loadedGeneration;
 
 
 	public static final String WHERE_ID_SELECTION = ID_COLUMN + " == ?";
@@ -61,52 +76,99 @@ public class DeletedEntries<T extends IdentificableModel> {
 
 	}
 
+	/**
+	 * Discards the loaded ids of all the classes. Must be called when the table is dropped or modified externally.
+	 */
+	public static void invalidateCaches() {
+		generation.incrementAndGet();
+	}
+
 	public <T extends IdentificableModel> void setToDelete(SQLiteDatabase db, T model) {
 		ContentValues values = new ContentValues();
 		values.put(ID_COLUMN, model.getId());
 		values.put(CLASS_COLUMN, model.getClass().getName());
 		db.insert(TABLE, null, values);
-		
+		if(model.getClass()==modelClass)
+			addLoadedId(model.getId());
+	}
+
+	/**
+	 * Insert statement adding the entry of the row of table with the given id if it matches the condition, so the
+	 * state of the row does not need to be read. Arguments are the class name and the id.
+	 * @see #entryAdded(IdentificableModel)
+	 */
+	public String createInsertFromTable(String table, String condition) {
+		return "INSERT INTO " + TABLE + " (" + ID_COLUMN + DBUtil.COMMA_SEP + CLASS_COLUMN + ") SELECT " + ID_COLUMN + ", ? FROM " + table
+				+ " WHERE " + ID_COLUMN + " == ? AND " + condition;
+	}
+
+	/**
+	 * Must be called when the entry of the model has been inserted with createInsertFromTable
+	 */
+	public void entryAdded(T model) {
+		if(model.getClass()==modelClass)
+			addLoadedId(model.getId());
+	}
+
+	private synchronized void addLoadedId(String id) {
+		if(deletedIds!=null)
+			deletedIds.add(id);
+	}
+
+	private synchronized void removeLoadedId(String id) {
+		if(deletedIds!=null)
+			deletedIds.remove(id);
+	}
+
+	private synchronized boolean isLoadedId(SQLiteDatabase db, String id) {
+		int currentGeneration = generation.get();
+		if(deletedIds==null || loadedGeneration!=currentGeneration){
+			deletedIds = getDeletedIds(db);
+			loadedGeneration = currentGeneration;
+		}
+		return deletedIds.contains(id);
 	}
 
 	public void setAsDeleted(String id) {
 		SQLiteDatabase db = dbHelper.getWritableDatabase();
 		setAsDeleted(db, id);
-		db.close();
 	}
 	
 	public void setAsDeleted(SQLiteDatabase db, String id) {
 		String[] selectionArgs = { id };
 		db.delete(TABLE, WHERE_ID_SELECTION, selectionArgs);
+		removeLoadedId(id);
 	}
 
 	public List<T> getDeletedModelsIds(){
 		List<T> result = new ArrayList<>();
-		Cursor cursor = getCursor();
-		while(cursor.moveToNext()){
-			try {
-				String id = CursorUtil.getString(cursor, ID_COLUMN);
-				Class<T> clazz = getModelClass();
-				T model = clazz.newInstance();
-				model.setId(id);
-				result.add(model);
-			} catch (Exception e) {
-				throw new BreakFastException(e);
-			}
+		for(String id: getDeletedIds()){
+			result.add(ReflectionUtil.createIdModel(getModelClass(), id));
 		}
 		return result;
 	}
-	
-	
-	
-	private Cursor getCursor(){
-		//TODO order may be important!!!
-		SQLiteDatabase db = dbHelper.getReadableDatabase();
-		String[] projection = {ID_COLUMN, CLASS_COLUMN};
+
+	/**
+	 * @return ids of the deleted entries of this model class (read from the database)
+	 */
+	public Set<String> getDeletedIds(){
+		return getDeletedIds(dbHelper.getReadableDatabase());
+	}
+
+	/**
+	 * @return ids of the deleted entries of this model class (read from the database)
+	 */
+	public Set<String> getDeletedIds(SQLiteDatabase db){
+		Set<String> result = new HashSet<String>();
+		String[] projection = {ID_COLUMN};
 		String selection = CLASS_COLUMN +" == ?";
 		String[] values = {getModelClass().getName()};
 		Cursor cursor = db.query(TABLE,	projection, selection, values, null, null,  null);
-		return cursor;
+		while(cursor.moveToNext()){
+			result.add(cursor.getString(0));
+		}
+		cursor.close();
+		return result;
 	}
 	
 	public Class<T> getModelClass(){
@@ -114,11 +176,23 @@ public class DeletedEntries<T extends IdentificableModel> {
 	}
 
 	public boolean isDeleted(String id) {
-		SQLiteDatabase db = dbHelper.getReadableDatabase();
-		String[] projection = {ID_COLUMN, CLASS_COLUMN};
+		return isDeleted(dbHelper.getReadableDatabase(), id);
+	}
+
+	/**
+	 * Checks the loaded ids, so only ids that are found are queried on the database
+	 */
+	public boolean isDeleted(SQLiteDatabase db, String id) {
+		if(!isLoadedId(db, id))
+			return false;
+		String[] projection = {ID_COLUMN};
 		String[] selectionArgs = { id };
 		Cursor cursor = db.query(TABLE,	projection, WHERE_ID_SELECTION, selectionArgs, null, null,  null);
-		return cursor.moveToNext();
+		boolean deleted = cursor.moveToNext();
+		cursor.close();
+		if(!deleted)
+			removeLoadedId(id);
+		return deleted;
 	}
 
 }
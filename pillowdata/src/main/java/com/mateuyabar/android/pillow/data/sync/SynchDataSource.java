@@ -95,6 +95,11 @@ public class SynchDataSource<T extends IdentificableModel> implements ISynchData
 	public IPillowResult<T> show(T model) {
 		return localDataSource.show(model);
 	}
+
+	@Override
+	public IPillowResult<List<T>> showAll(List<T> models) {
+		return localDataSource.showAll(models);
+	}
 	
 
 	
@@ -7,6 +7,10 @@ import com.mateuyabar.android.pillow.data.core.IPillowResult;
 import com.mateuyabar.android.pillow.data.db.DBModelController;
 import com.mateuyabar.android.pillow.data.db.IDbMapping;
 import com.mateuyabar.android.pillow.data.db.ISynchLocalDbDataSource;
+import com.mateuyabar.android.pillow.data.db.LazyModelList;
+import com.mateuyabar.android.pillow.data.db.ModelQuery;
+import com.mateuyabar.android.pillow.data.db.Page;
+import com.mateuyabar.android.pillow.data.db.PageRequest;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.data.rest.IAuthenticationController;
 import com.mateuyabar.android.pillow.data.rest.IRestMapping;
@@ -41,6 +45,71 @@ public class SynchDbDataSource<T extends IdentificableModel> extends SynchDataSo
         return getLocalDataSource().index(selection, selectionArgs, order);
     }
 
+    @Override
+    public IPillowResult<LazyModelList<T>> lazyIndex(String selection, String[] selectionArgs, String order) {
+        return getLocalDataSource().lazyIndex(selection, selectionArgs, order);
+    }
+
+    @Override
+    public IPillowResult<LazyModelList<T>> lazyIndex(T filter) {
+        return getLocalDataSource().lazyIndex(filter);
+    }
+
+    @Override
+    public IPillowResult<Page<T>> page(String selection, String[] selectionArgs, PageRequest request) {
+        return getLocalDataSource().page(selection, selectionArgs, request);
+    }
+
+    @Override
+    public IPillowResult<Page<T>> page(T filter, PageRequest request) {
+        return getLocalDataSource().page(filter, request);
+    }
+
+    @Override
+    public IPillowResult<Collection<T>> projectedIndex(String[] fields, String selection, String[] selectionArgs, String order) {
+        return getLocalDataSource().projectedIndex(fields, selection, selectionArgs, order);
+    }
+
+    @Override
+    public IPillowResult<Collection<T>> projectedIndex(String[] fields, T filter) {
+        return getLocalDataSource().projectedIndex(fields, filter);
+    }
+
+    @Override
+    public <V> IPillowResult<Collection<V>> projectedIndex(Class<V> viewClass, String selection, String[] selectionArgs, String order) {
+        return getLocalDataSource().projectedIndex(viewClass, selection, selectionArgs, order);
+    }
+
+    @Override
+    public IPillowResult<Collection<T>> search(String query, int limit) {
+        return getLocalDataSource().search(query, limit);
+    }
+
+    @Override
+    public IPillowResult<Collection<T>> search(String query, T filter, int limit) {
+        return getLocalDataSource().search(query, filter, limit);
+    }
+
+    @Override
+    public IPillowResult<Collection<T>> query(ModelQuery<T> query) {
+        return getLocalDataSource().query(query);
+    }
+
+    @Override
+    public IPillowResult<Integer> count(ModelQuery<T> query) {
+        return getLocalDataSource().count(query);
+    }
+
+    @Override
+    public IPillowResult<Collection<T>> indexIncluding(T filter, String... include) {
+        return getLocalDataSource().indexIncluding(filter, include);
+    }
+
+    @Override
+    public IPillowResult<T> showIncluding(T model, String... include) {
+        return getLocalDataSource().showIncluding(model, include);
+    }
+
     @Override
     public IPillowResult<Integer> count(String selection, String[] selectionArgs) {
         return getLocalDataSource().count(selection, selectionArgs);
@@ -19,6 +19,7 @@
 package com.mateuyabar.android.pillow.data.validator;
 
 import com.mateuyabar.android.pillow.data.validator.IValidator.IValidationError;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
 import com.mateuyabar.util.exceptions.BreakFastException;
 
 import java.lang.annotation.Annotation;
@@ -31,7 +32,7 @@ public abstract class AbstractFieldValidator<T, K extends Annotation> implements
 	@Override
 	public IValidationError validate(T model, Field field) {
 		try{
-			K annotation = field.getAnnotation(getAnnotationClass());
+			K annotation = ClassMetadata.getFieldAnnotation(field, getAnnotationClass());
 			if(annotation!=null){
 				return validate(model, field, annotation);
 			}
@@ -43,8 +43,6 @@ public class DefaultValidator<T> implements IValidator<T>{
 	public List<IValidationError> validate(T model) {
         List<IValidationError> errors = new ArrayList<IValidationError>();
         for(Field field :ReflectionUtil.getStoredFields(modelClass)){
-            field.setAccessible(true);
-
             //NotNull validation
             IValidationError notNullError = notNullValidator.validate(model, field);
             if(notNullError!=null){
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.util.reflection;
+
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.Embeddable;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.OrderBy;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.ValueType;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.ValueType.NONE;
+import com.mateuyabar.util.exceptions.BreakFastException;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reflection metadata of a class, computed once and shared (see get).
+ * Stored fields are the declared fields, including the ones of parent classes, that are not transient neither synthetic.
+ * They are already accessible. Returned arrays are shared and must not be modified.
+ */
+public class ClassMetadata {
+	private static final Map<Class<?>, ClassMetadata> registry = new ConcurrentHashMap<Class<?>, ClassMetadata>();
+
+	public static ClassMetadata get(Class<?> type){
+		ClassMetadata metadata = registry.get(type);
+		if(metadata==null){
+			metadata = new ClassMetadata(type);
+			registry.put(type, metadata);
+		}
+		return metadata;
+	}
+
+	/**
+	 * Shortcut for get(field.getDeclaringClass()).getAnnotation(field, annotationClass)
+	 */
+	public static <A extends Annotation> A getFieldAnnotation(Field field, Class<A> annotationClass){
+		return get(field.getDeclaringClass()).getAnnotation(field, annotationClass);
+	}
+
+	final Class<?> type;
+	final Field[] storedFields;
+	final Map<String, Field> storedFieldsByName = new HashMap<String, Field>();
+	final Map<Field, Map<Class<? extends Annotation>, Annotation>> fieldAnnotations = new HashMap<Field, Map<Class<? extends Annotation>, Annotation>>();
+	final Field[] belongsToFields;
+	final Map<Field, Field> belongsToModelFields = new HashMap<Field, Field>();
+	final Field orderByField;
+	final boolean embeddable;
+
+	private ClassMetadata(Class<?> type) {
+		this.type = type;
+		List<Field> fields = new ArrayList<Field>();
+		List<Field> belongsTo = new ArrayList<Field>();
+		Field orderBy = null;
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			for(Field field: c.getDeclaredFields()){
+				if(field.isSynthetic() || Modifier.isTransient(field.getModifiers()))
+					continue;
+				field.setAccessible(true);
+				fields.add(field);
+				if(!storedFieldsByName.containsKey(field.getName()))
+					storedFieldsByName.put(field.getName(), field);
+
+				Map<Class<? extends Annotation>, Annotation> annotations = new HashMap<Class<? extends Annotation>, Annotation>();
+				for(Annotation annotation: field.getAnnotations()){
+					annotations.put(annotation.annotationType(), annotation);
+				}
+				fieldAnnotations.put(field, annotations);
+
+				ValueType valueType = (ValueType) annotations.get(ValueType.class);
+				if(valueType!=null && valueType.belongsTo()!=null && valueType.belongsTo()!=NONE.class)
+					belongsTo.add(field);
+				if(annotations.containsKey(OrderBy.class))
+					orderBy = field;
+			}
+		}
+		storedFields = fields.toArray(new Field[fields.size()]);
+		belongsToFields = belongsTo.toArray(new Field[belongsTo.size()]);
+		for(Field field: belongsToFields){
+			Field modelField = findBelongsToModelField(field);
+			if(modelField!=null)
+				belongsToModelFields.put(field, modelField);
+		}
+		orderByField = orderBy;
+		embeddable = type.getAnnotation(Embeddable.class)!=null;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public Field[] getStoredFields() {
+		return storedFields;
+	}
+
+	/**
+	 * @return the stored field with the given name (the one of the subclass if hidden), or null
+	 */
+	public Field getStoredField(String name) {
+		return storedFieldsByName.get(name);
+	}
+
+	/**
+	 * @return the annotation of a stored field of this class, or null
+	 */
+	public <A extends Annotation> A getAnnotation(Field field, Class<A> annotationClass) {
+		Map<Class<? extends Annotation>, Annotation> annotations = fieldAnnotations.get(field);
+		if(annotations==null)
+			return field.getAnnotation(annotationClass);
+		return (A) annotations.get(annotationClass);
+	}
+
+	public ValueType getValueType(Field field) {
+		return getAnnotation(field, ValueType.class);
+	}
+
+	public Field[] getBelongsToFields() {
+		return belongsToFields;
+	}
+
+	/**
+	 * @return the transient field where the parent of a belongs to field is set (see DBModelController.include),
+	 * or null. By convention for a belongs to field xxxId it is the transient field xxx of the parent class.
+	 */
+	public Field getBelongsToModelField(Field belongsToField) {
+		return belongsToModelFields.get(belongsToField);
+	}
+
+	/**
+	 * @return if any belongs to field has a parent field (see getBelongsToModelField)
+	 */
+	public boolean hasBelongsToModelFields() {
+		return !belongsToModelFields.isEmpty();
+	}
+
+	private Field findBelongsToModelField(Field belongsToField) {
+		String name = belongsToField.getName();
+		if(!name.endsWith("Id") || name.length()<=2)
+			return null;
+		name = name.substring(0, name.length()-2);
+		Class<?> parentClass = getValueType(belongsToField).belongsTo();
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			for(Field field: c.getDeclaredFields()){
+				if(field.getName().equals(name) && Modifier.isTransient(field.getModifiers()) && field.getType().isAssignableFrom(parentClass)){
+					field.setAccessible(true);
+					return field;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the field annotated with OrderBy (the last one if many), or null
+	 */
+	public Field getOrderByField() {
+		return orderByField;
+	}
+
+	public OrderBy getOrderBy() {
+		return orderByField==null ? null : getAnnotation(orderByField, OrderBy.class);
+	}
+
+	public boolean isEmbeddable() {
+		return embeddable;
+	}
+
+	/**
+	 * @return a new instance of the class with the values of the stored fields of model. Values are not copied
+	 * (shallow copy), and transient fields are left with their default value.
+	 */
+	public <T> T copy(T model) {
+		try {
+			T copy = (T) type.newInstance();
+			for(Field field: storedFields){
+				if(!Modifier.isStatic(field.getModifiers()))
+					field.set(copy, field.get(model));
+			}
+			return copy;
+		} catch (Exception e) {
+			throw new BreakFastException(e);
+		}
+	}
+}
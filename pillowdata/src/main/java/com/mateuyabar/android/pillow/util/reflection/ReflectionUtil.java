@@ -28,39 +28,26 @@ import com.mateuyabar.util.exceptions.BreakFastException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ReflectionUtil {
+	private static final Map<Class<?>, Boolean> embeddableClasses = new ConcurrentHashMap<Class<?>, Boolean>();
 	
 	/**
-	 * Returns the declared fields including fields form parent classes that are not transient neither synthetic
+	 * Returns the declared fields including fields form parent classes that are not transient neither synthetic.
+	 * The fields are accessible and the array is shared (see ClassMetadata): it must not be modified.
 	 * @param type
 	 * @return
 	 */
 	public static Field[] getStoredFields(Class type) {
-        List<Field> fields = new ArrayList<Field>();
-        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
-            Field[] innerFields = c.getDeclaredFields();
-            for(Field field:innerFields){
-            	if(!field.isSynthetic() &&  !isTransient(field)){
-            		fields.add(field);
-            	}
-            }
-        }
-        return fields.toArray(new Field[]{});
-    }
+		return ClassMetadata.get(type).getStoredFields();
+	}
 
 	public static Field getStoredField(Class type, String name) {
-		List<Field> fields = new ArrayList<Field>();
-		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
-			Field[] innerFields = c.getDeclaredFields();
-			for(Field field:innerFields){
-				if(!field.isSynthetic() &&  !isTransient(field) && field.getName().equals(name)){
-					return field;
-				}
-			}
-		}
-		return null;
+		return ClassMetadata.get(type).getStoredField(name);
 	}
 
 	public static boolean isTransient(Field field){
@@ -68,27 +55,21 @@ public class ReflectionUtil {
 	}
 	
 	public static boolean isBelongsTo(Field field){
-		ValueType valueType = field.getAnnotation(ValueType.class);
+		ValueType valueType = ClassMetadata.getFieldAnnotation(field, ValueType.class);
 		return valueType!=null && valueType.belongsTo()!=null && valueType.belongsTo()!=NONE.class;
 	}
 	
 	public static List<Class<?>> getBelongsToClasses(Class<?> modelClass){
 		List<Class<?>> result = new ArrayList<Class<?>>();
-		for(Field field : getBelongsToFields(modelClass)){
-			ValueType valueType = field.getAnnotation(ValueType.class);
-			result.add(valueType.belongsTo());
+		ClassMetadata metadata = ClassMetadata.get(modelClass);
+		for(Field field : metadata.getBelongsToFields()){
+			result.add(metadata.getValueType(field).belongsTo());
 		}
 		return result;
 	}
 
 	public static List<Field> getBelongsToFields(Class<?> modelClass){
-		List<Field> result = new ArrayList<Field>();
-		for(Field field: getStoredFields(modelClass)){
-			if(ReflectionUtil.isBelongsTo(field)){
-				result.add(field);
-			}
-		}
-		return result;
+		return new ArrayList<Field>(Arrays.asList(ClassMetadata.get(modelClass).getBelongsToFields()));
 	}
 	
 	public static void setReferenceId(Object model, Class<?> referencedClass, String id){
@@ -103,12 +84,22 @@ public class ReflectionUtil {
 		}
 	}
 	
+	/**
+	 * Checks the Embeddable annotation without creating the ClassMetadata of the class: it is called with the class of
+	 * every field (String, Date...), whose fields must not be walked and made accessible.
+	 */
 	public static boolean isEmbeddable(Class<?> clazz){
-		return clazz.getAnnotation(Embeddable.class)!=null;
+		Boolean embeddable = embeddableClasses.get(clazz);
+		if(embeddable==null){
+			embeddable = clazz.getAnnotation(Embeddable.class)!=null;
+			embeddableClasses.put(clazz, embeddable);
+		}
+		return embeddable;
 	}
 	
 	public static boolean isNull(Field field, Object model) {
-		field.setAccessible(true);
+		if(!field.isAccessible())
+			field.setAccessible(true);
 		try {
 			Object value = field.get(model);
 			if(value==null)
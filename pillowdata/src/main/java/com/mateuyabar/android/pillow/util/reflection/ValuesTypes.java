@@ -53,4 +53,32 @@ public class ValuesTypes {
 	@Target({ElementType.TYPE})
 	@Retention(RetentionPolicy.RUNTIME)
 	public @interface Embeddable{}
+
+	/**
+	 * Creates a database index on the annotated field. Fields with the same group are added to a single composite
+	 * index, in declaration order.
+	 */
+	@Target({ElementType.FIELD})
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Indexed{
+		String group() default "";
+		/**
+		 * If true the column is indexed with COLLATE NOCASE
+		 */
+		boolean noCase() default false;
+	}
+
+	/**
+	 * Adds the annotated field to the full text search index of the model (see SearchIndex)
+	 */
+	@Target({ElementType.FIELD})
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Searchable{}
+
+	/**
+	 * The IDbMapping of the annotated model is generated at compile time (pillowprocessor) instead of using reflection
+	 */
+	@Target({ElementType.TYPE})
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface GenerateDbMapping{}
 }
@@ -0,0 +1,114 @@
+package com.mateuyabar.android.pillow.data.db;
+
+import com.mateuyabar.android.pillow.data.models.AbstractIdentificableModel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ModelCacheTest {
+    public static class CachedModel extends AbstractIdentificableModel {
+        String name;
+
+        public CachedModel() {
+        }
+
+        CachedModel(String id, String name) {
+            super(id);
+            this.name = name;
+        }
+    }
+
+    private static CachedModel model(String id) {
+        return new CachedModel(id, "name " + id);
+    }
+
+    private static void put(ModelCache<CachedModel> cache, String id) {
+        cache.put(model(id), cache.getGeneration());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        ModelCache<CachedModel> cache = new ModelCache<>(CachedModel.class, 2, 0);
+        put(cache, "1");
+        put(cache, "2");
+        assertNotNull(cache.get("1"));
+        put(cache, "3");
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("1"));
+        assertNull(cache.get("2"));
+        assertNotNull(cache.get("3"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsByBytes() throws Exception {
+        ModelCache<CachedModel> cache = new ModelCache<>(CachedModel.class, 100, 1);
+        put(cache, "1");
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void getReturnsCopy() throws Exception {
+        ModelCache<CachedModel> cache = new ModelCache<>(CachedModel.class, 10, 0);
+        CachedModel model = model("1");
+        cache.put(model, cache.getGeneration());
+        model.name = "modified";
+
+        CachedModel cached = cache.get("1");
+        assertNotSame(model, cached);
+        assertEquals("1", cached.getId());
+        assertEquals("name 1", cached.name);
+
+        cached.name = "modified";
+        assertEquals("name 1", cache.get("1").name);
+    }
+
+    @Test
+    public void invalidateRemovesEntry() throws Exception {
+        ModelCache<CachedModel> cache = new ModelCache<>(CachedModel.class, 10, 0);
+        put(cache, "1");
+        put(cache, "2");
+        cache.invalidate("1");
+
+        assertNull(cache.get("1"));
+        assertNotNull(cache.get("2"));
+    }
+
+    @Test
+    public void putAfterInvalidateIsIgnored() throws Exception {
+        ModelCache<CachedModel> cache = new ModelCache<>(CachedModel.class, 10, 0);
+        long generation = cache.getGeneration();
+        cache.invalidate("1");
+        cache.put(model("1"), generation);
+
+        assertNull(cache.get("1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void clearRemovesAll() throws Exception {
+        ModelCache<CachedModel> cache = new ModelCache<>(CachedModel.class, 10, 0);
+        put(cache, "1");
+        put(cache, "2");
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        assertNull(cache.get("1"));
+    }
+
+    @Test
+    public void batchInvalidationIsRepeatedWhenTransactionEnds() throws Exception {
+        ModelCache<CachedModel> cache = new ModelCache<>(CachedModel.class, 10, 0);
+        cache.invalidate("1", true);
+        put(cache, "1");
+        assertNotNull(cache.get("1"));
+
+        ModelCache.transactionEnded();
+        assertNull(cache.get("1"));
+    }
+}
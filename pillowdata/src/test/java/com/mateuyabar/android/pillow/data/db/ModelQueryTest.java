@@ -0,0 +1,135 @@
+package com.mateuyabar.android.pillow.data.db;
+
+import com.mateuyabar.android.pillow.data.db.ModelQuery.Operator;
+import com.mateuyabar.android.pillow.data.models.AbstractIdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ValuesTypes.ValueType;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ModelQueryTest {
+    public static class ParentModel extends AbstractIdentificableModel {
+        String name;
+    }
+
+    public static class QueriedModel extends AbstractIdentificableModel {
+        String name;
+        int priority;
+        Long size;
+        Boolean done;
+        @ValueType(belongsTo = ParentModel.class)
+        String parentId;
+    }
+
+    private static final IDbMapping<QueriedModel> mapping = new ReflectionDbMapping<>(QueriedModel.class);
+    private static final IDbMapping<ParentModel> parentMapping = new ReflectionDbMapping<>(ParentModel.class);
+
+    private static ModelQuery<QueriedModel> query() {
+        return ModelQuery.from(QueriedModel.class, mapping);
+    }
+
+    @Test
+    public void noClauses() throws Exception {
+        ModelQuery<QueriedModel> query = query();
+        assertNull(query.getSelection());
+        assertNull(query.getOrderBy());
+        assertNull(query.getLimit());
+        assertEquals(0, query.getArgs().length);
+        assertTrue(query.getJoinedTables().isEmpty());
+    }
+
+    @Test
+    public void compare() throws Exception {
+        ModelQuery<QueriedModel> query = query().where("priority", Operator.GE, 3).like("name", "a%");
+        assertEquals("priority >= ? AND name LIKE ?", query.getSelection());
+        assertArrayEquals(new Object[]{3, "a%"}, query.getArgs());
+    }
+
+    @Test
+    public void argsKeepTheirType() throws Exception {
+        Object[] args = query().where("size", 10L).where("done", true).getArgs();
+        assertEquals(Long.class, args[0].getClass());
+        assertEquals(10L, args[0]);
+        assertEquals(Integer.class, args[1].getClass());
+        assertEquals(DBUtil.BOOLEAN_TRUE, args[1]);
+    }
+
+    @Test
+    public void nullIsComparedWithIsNull() throws Exception {
+        ModelQuery<QueriedModel> query = query().where("name", null).where("size", Operator.NE, null);
+        assertEquals("name IS NULL AND size IS NOT NULL", query.getSelection());
+        assertEquals(0, query.getArgs().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullCannotBeOrdered() throws Exception {
+        query().where("size", Operator.LT, null);
+    }
+
+    @Test
+    public void in() throws Exception {
+        ModelQuery<QueriedModel> query = query().in("id", Arrays.asList("a", "b", "c"));
+        assertEquals("id IN (?,?,?)", query.getSelection());
+        assertArrayEquals(new Object[]{"a", "b", "c"}, query.getArgs());
+    }
+
+    @Test
+    public void emptyInMatchesNothing() throws Exception {
+        ModelQuery<QueriedModel> query = query().in("id", Collections.emptyList());
+        assertEquals("0", query.getSelection());
+        assertEquals(0, query.getArgs().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void inRejectsNull() throws Exception {
+        query().in("id", Arrays.asList("a", null));
+    }
+
+    @Test
+    public void between() throws Exception {
+        ModelQuery<QueriedModel> query = query().between("priority", 1, 5);
+        assertEquals("priority BETWEEN ? AND ?", query.getSelection());
+        assertArrayEquals(new Object[]{1, 5}, query.getArgs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void betweenRejectsNull() throws Exception {
+        query().between("priority", 1, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownField() throws Exception {
+        query().where("unknown", 1);
+    }
+
+    @Test
+    public void orderAndLimit() throws Exception {
+        ModelQuery<QueriedModel> query = query().orderBy("priority", true).orderBy("name", false).limit(20).offset(40);
+        assertEquals("priority DESC,name", query.getOrderBy());
+        assertEquals("? OFFSET ?", query.getLimit());
+        assertArrayEquals(new Object[]{20L, 40L}, query.getLimitArgs());
+        assertArrayEquals(new Object[]{-1L, 5L}, query().offset(5).getLimitArgs());
+        assertEquals(query.getLimit(), query().limit(10).getLimit());
+    }
+
+    @Test
+    public void belongsTo() throws Exception {
+        ModelQuery<ParentModel> parentQuery = ModelQuery.from(ParentModel.class, parentMapping).where("name", "a");
+        ModelQuery<QueriedModel> query = query().where("priority", 1).belongsTo("parentId", parentQuery);
+        assertEquals("priority == ? AND parentId IN (SELECT id FROM ParentModel WHERE name == ?)", query.getSelection());
+        assertArrayEquals(new Object[]{1, "a"}, query.getArgs());
+        assertEquals(Collections.singleton("ParentModel"), query.getJoinedTables());
+    }
+
+    @Test
+    public void sameShapeSharesSql() throws Exception {
+        ModelQuery<QueriedModel> first = query().where("name", "a").in("id", Arrays.asList("1", "2"));
+        ModelQuery<QueriedModel> second = query().where("name", "b").in("id", Arrays.asList("3", "4"));
+        assertSame(first.getSelection(), second.getSelection());
+        assertArrayEquals(new Object[]{"b", "3", "4"}, second.getArgs());
+    }
+}
@@ -0,0 +1,34 @@
+package com.mateuyabar.android.pillow.data.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+    @Test
+    public void matchesPrefixOfEveryWord() throws Exception {
+        assertEquals("foo* bar*", SearchIndex.createMatch("Foo  BAR"));
+    }
+
+    @Test
+    public void stripsQuotesAndOperators() throws Exception {
+        assertEquals("foo* bar*", SearchIndex.createMatch("\"foo\" -bar*"));
+        assertEquals("title* foo* near* 2* bar* baz*", SearchIndex.createMatch("title:(foo) NEAR/2 ^bar+baz"));
+    }
+
+    @Test
+    public void lowercasesKeywords() throws Exception {
+        assertEquals("foo* or* bar* and* not* baz*", SearchIndex.createMatch("foo OR bar AND NOT baz"));
+    }
+
+    @Test
+    public void keepsLettersAndDigits() throws Exception {
+        assertEquals("cafè* número* 42*", SearchIndex.createMatch("Cafè, número 42!"));
+    }
+
+    @Test
+    public void noWords() throws Exception {
+        assertNull(SearchIndex.createMatch(""));
+        assertNull(SearchIndex.createMatch("  \"*-:() "));
+    }
+}
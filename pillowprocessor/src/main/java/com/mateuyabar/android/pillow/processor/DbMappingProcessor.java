@@ -0,0 +1,519 @@
+/*
+ * Copyright (c) Mateu Yabar Valles (http://mateuyabar.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ */
+
+package com.mateuyabar.android.pillow.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates an IDbMapping for each model annotated with ValuesTypes.GenerateDbMapping.
+ *
+ * The generated mapping (Model_PillowDbMapping, in the package of the model) extends ReflectionDbMapping and
+ * reads and writes the fields directly, so the row hot path does not use reflection. It produces the same schema
+ * as ReflectionDbMapping. Models that can not be mapped this way (private or static fields, embedded models...)
+ * are reported with a warning and keep using ReflectionDbMapping.
+ *
+ * Annotations are referenced by name, so this module does not depend on pillowdata.
+ */
+@SupportedAnnotationTypes(DbMappingProcessor.GENERATE_DB_MAPPING)
+public class DbMappingProcessor extends AbstractProcessor {
+    static final String VALUES_TYPES = "com.mateuyabar.android.pillow.util.reflection.ValuesTypes";
+    static final String GENERATE_DB_MAPPING = VALUES_TYPES + ".GenerateDbMapping";
+    static final String EMBEDDABLE = VALUES_TYPES + ".Embeddable";
+    static final String VALUE_TYPE = VALUES_TYPES + ".ValueType";
+    static final String VALUE_TYPE_NONE = VALUE_TYPE + ".NONE";
+    static final String BELONGS_TO_ON_DELETE = VALUES_TYPES + ".BelongsToOnDelete";
+    static final String IDENTIFICABLE_MODEL = "com.mateuyabar.android.pillow.data.models.IdentificableModel";
+    static final String REFLECTION_DB_MAPPING = "com.mateuyabar.android.pillow.data.db.ReflectionDbMapping";
+    static final String DB_MAPPING = "com.mateuyabar.android.pillow.data.db.IDbMapping";
+    static final String DB_UTIL = "com.mateuyabar.android.pillow.data.db.DBUtil";
+    static final String JAVA_2_DB_TYPE = "com.mateuyabar.android.pillow.data.db.java2db.Java2DbType";
+    /**
+     * Must match GeneratedDbMappings.SUFFIX
+     */
+    static final String SUFFIX = "_PillowDbMapping";
+
+    enum Kind {STRING, INT, DOUBLE, LONG, FLOAT, SHORT, BOOLEAN, CONVERTER}
+
+    static class MappedField {
+        String name;
+        Kind kind;
+        TypeMirror type;
+        /**
+         * Class literal of the erased type (as ReflectionDbMapping uses Field.getType())
+         */
+        String className;
+        String belongsTo;
+        String belongsToMode;
+    }
+
+    Elements elements;
+    Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        TypeElement annotation = elements.getTypeElement(GENERATE_DB_MAPPING);
+        if (annotation == null)
+            return false;
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "GenerateDbMapping can only be used on classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<MappedField> fields = getMappedFields(type);
+            if (fields == null)
+                continue;
+            boolean hasIdField = hasStoredField(type, "id");
+            try {
+                write(type, fields, hasIdField);
+            } catch (IOException e) {
+                error(type, "Could not generate db mapping: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the fields to map (stored fields except the id, in ReflectionUtil.getStoredFields order),
+     * or null if the model can not use a generated mapping
+     */
+    private List<MappedField> getMappedFields(TypeElement type) {
+        TypeMirror identificableModel = types.erasure(elements.getTypeElement(IDENTIFICABLE_MODEL).asType());
+        if (!types.isAssignable(types.erasure(type.asType()), identificableModel)) {
+            error(type, "GenerateDbMapping models must implement IdentificableModel");
+            return null;
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT))
+            return skip(type, "it is abstract");
+        if (!type.getTypeParameters().isEmpty())
+            return skip(type, "it is generic");
+        if (type.getModifiers().contains(Modifier.PRIVATE) || (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)))
+            return skip(type, "it is not accessible as a top level or static nested class");
+        if (!hasAccessibleConstructor(type))
+            return skip(type, "it has no accessible no-arg constructor");
+
+        PackageElement modelPackage = elements.getPackageOf(type);
+        List<MappedField> result = new ArrayList<MappedField>();
+        for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+            boolean samePackage = elements.getPackageOf(current).equals(modelPackage);
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                String name = field.getSimpleName().toString();
+                if (modifiers.contains(Modifier.TRANSIENT) || name.equals("id"))
+                    continue;
+                if (modifiers.contains(Modifier.STATIC))
+                    return skip(type, "static field " + name + " is not transient");
+                if (modifiers.contains(Modifier.FINAL))
+                    return skip(type, "field " + name + " is final");
+                if (!modifiers.contains(Modifier.PUBLIC) && (modifiers.contains(Modifier.PRIVATE) || !samePackage))
+                    return skip(type, "field " + name + " is not accessible from " + modelPackage.getQualifiedName());
+                if (isEmbeddable(field.asType()))
+                    return skip(type, "embedded field " + name + " is not supported");
+                result.add(createMappedField(field));
+            }
+        }
+        return result;
+    }
+
+    private MappedField createMappedField(VariableElement field) {
+        MappedField mappedField = new MappedField();
+        mappedField.name = field.getSimpleName().toString();
+        mappedField.type = types.erasure(field.asType());
+        mappedField.className = mappedField.type.toString();
+        mappedField.kind = getKind(mappedField.type);
+
+        AnnotationMirror valueType = getAnnotation(field, VALUE_TYPE);
+        if (valueType != null) {
+            String belongsTo = null;
+            String belongsToMode = null;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(valueType).entrySet()) {
+                String key = entry.getKey().getSimpleName().toString();
+                if (key.equals("belongsTo")) {
+                    belongsTo = types.erasure((TypeMirror) entry.getValue().getValue()).toString();
+                } else if (key.equals("belongsToMode")) {
+                    belongsToMode = ((VariableElement) entry.getValue().getValue()).getSimpleName().toString();
+                }
+            }
+            if (belongsTo != null && !belongsTo.equals(VALUE_TYPE_NONE) && !"NO_ACTION".equals(belongsToMode)) {
+                mappedField.belongsTo = belongsTo;
+                mappedField.belongsToMode = belongsToMode;
+            }
+        }
+        return mappedField;
+    }
+
+    private Kind getKind(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return Kind.INT;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case LONG:
+                return Kind.LONG;
+            case FLOAT:
+                return Kind.FLOAT;
+            case SHORT:
+                return Kind.SHORT;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case DECLARED:
+                String name = type.toString();
+                if (name.equals("java.lang.String"))
+                    return Kind.STRING;
+                if (name.equals("java.lang.Integer"))
+                    return Kind.INT;
+                if (name.equals("java.lang.Double"))
+                    return Kind.DOUBLE;
+                if (name.equals("java.lang.Long"))
+                    return Kind.LONG;
+                if (name.equals("java.lang.Float"))
+                    return Kind.FLOAT;
+                if (name.equals("java.lang.Short"))
+                    return Kind.SHORT;
+                if (name.equals("java.lang.Boolean"))
+                    return Kind.BOOLEAN;
+                return Kind.CONVERTER;
+            default:
+                return Kind.CONVERTER;
+        }
+    }
+
+    private String getDbType(MappedField field, int index) {
+        switch (field.kind) {
+            case STRING:
+                return DB_UTIL + ".STRING_TYPE";
+            case INT:
+                return DB_UTIL + ".INT_TYPE";
+            case DOUBLE:
+                return DB_UTIL + ".DOUBLE_TYPE";
+            case LONG:
+                return DB_UTIL + ".LONG_TYPE";
+            case FLOAT:
+                return DB_UTIL + ".DOUBLE_TYPE";
+            case SHORT:
+                return DB_UTIL + ".INT_TYPE";
+            case BOOLEAN:
+                return DB_UTIL + ".BOOLEAN_TYPE";
+            default:
+                return converterName(index) + ".getDbType()";
+        }
+    }
+
+    /**
+     * Wrapper fields are read as null from NULL columns, as PrimitiveCodec does
+     */
+    private String readExpression(MappedField field, int index) {
+        String column = "columns[" + index + "]";
+        String value;
+        switch (field.kind) {
+            case STRING:
+                return "cursor.getString(" + column + ")";
+            case INT:
+                value = "cursor.getInt(" + column + ")";
+                break;
+            case DOUBLE:
+                value = "cursor.getDouble(" + column + ")";
+                break;
+            case LONG:
+                value = "cursor.getLong(" + column + ")";
+                break;
+            case FLOAT:
+                value = "cursor.getFloat(" + column + ")";
+                break;
+            case SHORT:
+                value = "cursor.getShort(" + column + ")";
+                break;
+            case BOOLEAN:
+                value = "cursor.getInt(" + column + ") == " + DB_UTIL + ".BOOLEAN_TRUE";
+                break;
+            default:
+                return "(" + castType(field.type) + ") " + converterName(index) + ".dbToJava(cursor, " + column + ", " + field.className + ".class)";
+        }
+        if (field.type.getKind().isPrimitive())
+            return value;
+        return "cursor.isNull(" + column + ") ? null : " + field.className + ".valueOf(" + value + ")";
+    }
+
+    /**
+     * Binds the field at the given index. Primitive fields are bound without boxing.
+     */
+    private String bindStatement(MappedField field, int fieldIndex, String model) {
+        String index = "firstIndex + " + fieldIndex;
+        String value = model + "." + field.name;
+        if (field.type.getKind().isPrimitive()) {
+            switch (field.kind) {
+                case DOUBLE:
+                case FLOAT:
+                    return "statement.bindDouble(" + index + ", " + value + ");";
+                case BOOLEAN:
+                    return "statement.bindLong(" + index + ", " + dbValueExpression(field, fieldIndex, model) + ");";
+                default:
+                    return "statement.bindLong(" + index + ", " + value + ");";
+            }
+        }
+        return DB_UTIL + ".bind(statement, " + index + ", " + dbValueExpression(field, fieldIndex, model) + ");";
+    }
+
+    private String dbValueExpression(MappedField field, int index, String model) {
+        String value = model + "." + field.name;
+        if (field.kind == Kind.CONVERTER)
+            return converterName(index) + ".javaToDb(" + value + ")";
+        if (field.kind == Kind.BOOLEAN) {
+            String dbValue = "(" + value + " ? " + DB_UTIL + ".BOOLEAN_TRUE : " + DB_UTIL + ".BOOLEAN_FALSE)";
+            return field.type.getKind().isPrimitive() ? dbValue : "(" + value + " == null ? null : " + dbValue + ")";
+        }
+        return value;
+    }
+
+    /**
+     * Same condition as ReflectionUtil.isNull: null, or 0 for int fields. Null if the field is always used.
+     */
+    private String notNullCondition(MappedField field, String model) {
+        String value = model + "." + field.name;
+        if (field.type.getKind() == TypeKind.INT)
+            return value + " != 0";
+        if (field.type.getKind().isPrimitive())
+            return null;
+        return value + " != null";
+    }
+
+    private String castType(TypeMirror type) {
+        if (type.getKind().isPrimitive())
+            return types.boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString();
+        return type.toString();
+    }
+
+    private static String converterName(int index) {
+        return "java2DbType" + index;
+    }
+
+    private void write(TypeElement type, List<MappedField> fields, boolean hasIdField) throws IOException {
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        String simpleName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1).replace('$', '_') + SUFFIX;
+        String modelName = type.getQualifiedName().toString();
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type);
+        PrintWriter out = new PrintWriter(file.openWriter());
+        try {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by pillowprocessor from " + modelName + ". Do not edit.");
+            out.println(" */");
+            out.println("public class " + simpleName + " extends " + REFLECTION_DB_MAPPING + "<" + modelName + "> {");
+
+            out.print("    private static final String[] COLUMNS = {");
+            for (int i = 0; i < fields.size(); ++i) {
+                out.print((i == 0 ? "" : ", ") + "\"" + fields.get(i).name + "\"");
+            }
+            out.println("};");
+            for (int i = 0; i < fields.size(); ++i) {
+                if (fields.get(i).kind == Kind.CONVERTER)
+                    out.println("    private final " + JAVA_2_DB_TYPE + " " + converterName(i) + ";");
+            }
+            out.println();
+
+            out.println("    public " + simpleName + "() {");
+            out.println("        super(" + modelName + ".class);");
+            for (int i = 0; i < fields.size(); ++i) {
+                MappedField field = fields.get(i);
+                if (field.kind == Kind.CONVERTER)
+                    out.println("        " + converterName(i) + " = getJava2DbType(" + field.className + ".class);");
+            }
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public " + modelName + " createModel(android.database.Cursor cursor, String id) {");
+            out.println("        int[] columns = getColumnIndexes(cursor, COLUMNS);");
+            out.println("        " + modelName + " model = new " + modelName + "();");
+            out.println("        model.setId(id);");
+            for (int i = 0; i < fields.size(); ++i) {
+                MappedField field = fields.get(i);
+                out.println("        if (columns[" + i + "] != -1)");
+                out.println("            model." + field.name + " = " + readExpression(field, i) + ";");
+            }
+            out.println("        return model;");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public void addModelContentValues(" + modelName + " model, android.content.ContentValues values) {");
+            for (int i = 0; i < fields.size(); ++i) {
+                MappedField field = fields.get(i);
+                out.println("        " + DB_UTIL + ".put(values, \"" + field.name + "\", " + dbValueExpression(field, i, "model") + ");");
+            }
+            if (hasIdField)
+                out.println("        " + DB_UTIL + ".put(values, \"id\", model.getId());");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public int bindModelValues(" + modelName + " model, android.database.sqlite.SQLiteProgram statement, int firstIndex) {");
+            for (int i = 0; i < fields.size(); ++i) {
+                out.println("        " + bindStatement(fields.get(i), i, "model"));
+            }
+            out.println("        return firstIndex + " + fields.size() + ";");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public String[] getModelAttributesForProjection() {");
+            out.println("        return COLUMNS;");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public String[][] getAttributes() {");
+            out.println("        return new String[][]{");
+            for (int i = 0; i < fields.size(); ++i) {
+                out.println("                {\"" + fields.get(i).name + "\", " + getDbType(fields.get(i), i) + "},");
+            }
+            out.println("        };");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public " + DB_MAPPING + ".IDBSelection getSelection(" + modelName + " filter) {");
+            out.println("        java.util.List<String> selection = new java.util.ArrayList<String>();");
+            out.println("        java.util.List<String> args = new java.util.ArrayList<String>();");
+            for (int i = 0; i < fields.size(); ++i) {
+                MappedField field = fields.get(i);
+                String condition = notNullCondition(field, "filter");
+                String indent = condition == null ? "        " : "            ";
+                if (condition != null)
+                    out.println("        if (" + condition + ") {");
+                out.println(indent + "selection.add(\"" + field.name + " == ?\");");
+                out.println(indent + "args.add(String.valueOf(" + dbValueExpression(field, i, "filter") + "));");
+                if (condition != null)
+                    out.println("        }");
+            }
+            if (hasIdField) {
+                out.println("        if (filter.getId() != null) {");
+                out.println("            selection.add(\"id == ?\");");
+                out.println("            args.add(filter.getId());");
+                out.println("        }");
+            }
+            out.println("        return new " + DB_MAPPING + ".DBSelection(android.text.TextUtils.join(\" AND \", selection), args.toArray(new String[args.size()]));");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public java.util.List<String> getTriggers() {");
+            out.println("        java.util.List<String> result = new java.util.ArrayList<String>();");
+            for (MappedField field : fields) {
+                if (field.belongsTo != null)
+                    out.println("        result.add(createBelongsToTrigger(" + field.belongsTo + ".class, getTableName(), \"" + field.name + "\", " + BELONGS_TO_ON_DELETE + "." + field.belongsToMode + "));");
+            }
+            out.println("        return result;");
+            out.println("    }");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED)
+            return null;
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private boolean hasStoredField(TypeElement type, String name) {
+        for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (field.getSimpleName().contentEquals(name) && !field.getModifiers().contains(Modifier.TRANSIENT))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasAccessibleConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isEmbeddable(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED)
+            return false;
+        return getAnnotation(((DeclaredType) type).asElement(), EMBEDDABLE) != null;
+    }
+
+    private AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName))
+                return mirror;
+        }
+        return null;
+    }
+
+    private List<MappedField> skip(TypeElement type, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "No db mapping generated for " + type.getQualifiedName() + " (" + reason + "), ReflectionDbMapping will be used", type);
+        return null;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
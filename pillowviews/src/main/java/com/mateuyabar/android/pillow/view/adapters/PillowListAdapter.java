@@ -7,9 +7,15 @@ import android.widget.BaseAdapter;
 import android.widget.Filter;
 import android.widget.Filterable;
 
+import com.mateuyabar.android.pillow.Pillow;
 import com.mateuyabar.android.pillow.PillowView;
+import com.mateuyabar.android.pillow.data.IDataSource;
+import com.mateuyabar.android.pillow.data.db.IDBDataSource;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+import com.mateuyabar.android.pillow.view.base.DbSearch;
+import com.mateuyabar.android.pillow.view.base.FilterText;
 import com.mateuyabar.android.pillow.view.base.IModelAdapter;
+import com.mateuyabar.android.pillow.view.base.IProjectedModelAdapter;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -26,11 +32,23 @@ public class PillowListAdapter<T extends IdentificableModel> extends BaseAdapter
     Context context;
     IModelAdapter<T> modelAdapter;
     Class<T> modelClass;
+    IDataSource<T> dataSource;
+    boolean searchable;
+    T filter;
 
     public PillowListAdapter(Context context, Class<T> modelClass) {
         this.context = context;
         this.modelClass=modelClass;
         this.modelAdapter = PillowView.getInstance(context).getViewConfiguration(modelClass).getModelAdapter(context);
+        this.dataSource = (IDataSource<T>) Pillow.getInstance(context).getDataSource(modelClass);
+        this.searchable = DbSearch.isSearchable(dataSource);
+    }
+
+    /**
+     * @param filter filter of the shown models, used when searching in the database
+     */
+    public void setFilter(T filter) {
+        this.filter = filter;
     }
 
     public void setModels(List<T> models) {
@@ -39,6 +57,16 @@ public class PillowListAdapter<T extends IdentificableModel> extends BaseAdapter
         notifyDataSetChanged();
     }
 
+    /**
+     * @return the fields used by the model adapter, or null if it needs all of them
+     * @see IProjectedModelAdapter
+     */
+    public String[] getProjection() {
+        if (modelAdapter instanceof IProjectedModelAdapter)
+            return ((IProjectedModelAdapter<T>) modelAdapter).getProjection();
+        return null;
+    }
+
     @Override
     public int getCount() {
         return models.size();
@@ -65,11 +93,21 @@ public class PillowListAdapter<T extends IdentificableModel> extends BaseAdapter
     }
 
     /**
-     * Filters the results using the tostring method.
+     * Filters the results using the full text search index if the model has Searchable fields, or the tostring method
+     * (the projected fields if the models are partially loaded, see FilterText).
      */
     private class BasicFilter extends Filter{
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
+            if (searchable) {
+                List<T> result = DbSearch.search(dataSource, constraint, filter);
+                if (result != null) {
+                    FilterResults results = new FilterResults();
+                    results.values = result;
+                    results.count = result.size();
+                    return results;
+                }
+            }
             if (originalModels == null && !models.isEmpty()) {
                 originalModels = new ArrayList<T>(models);
             }
@@ -84,8 +122,9 @@ public class PillowListAdapter<T extends IdentificableModel> extends BaseAdapter
             } else {
                 List<T> startWith = new ArrayList<T>();
                 List<T> contains = new ArrayList<T>();
+                String[] projection = dataSource instanceof IDBDataSource ? getProjection() : null;
                 for (T model : originalModels) {
-                    String modelString = model.toString().toLowerCase();
+                    String modelString = FilterText.get(model, projection).toLowerCase();
                     String constrainString = constraint.toString().toLowerCase();
                     if (modelString.startsWith(constrainString)) {
                         startWith.add(model);
@@ -104,7 +143,7 @@ public class PillowListAdapter<T extends IdentificableModel> extends BaseAdapter
 
         @Override
         protected void publishResults(CharSequence constraint, FilterResults results) {
-            if (originalModels == null && !models.isEmpty()) {
+            if (!searchable && originalModels == null && !models.isEmpty()) {
                 originalModels = new ArrayList<T>(models);
             }
             models.clear();
@@ -0,0 +1,104 @@
+package com.mateuyabar.android.pillow.view.base;
+
+import android.util.Log;
+
+import com.mateuyabar.android.pillow.Pillow;
+import com.mateuyabar.android.pillow.PillowError;
+import com.mateuyabar.android.pillow.data.IDataSource;
+import com.mateuyabar.android.pillow.data.db.DBUtil;
+import com.mateuyabar.android.pillow.data.db.IDBDataSource;
+import com.mateuyabar.android.pillow.data.db.IDbMapping;
+import com.mateuyabar.android.pillow.data.db.IDbMapping.IDBSelection;
+import com.mateuyabar.android.pillow.data.db.LazyModelList;
+import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Used by the list filters to search in the database full text search index (models with Searchable fields)
+ * instead of comparing the toString of every model.
+ */
+public class DbSearch {
+    public static final String LOG_ID = Pillow.LOG_ID + " - DbSearch";
+
+    /**
+     * @return true if the data source is a db one and the model has Searchable fields
+     */
+    public static boolean isSearchable(IDataSource<?> dataSource) {
+        return dataSource instanceof IDBDataSource && !((IDBDataSource<?>) dataSource).getDbMapping().getSearchColumns().isEmpty();
+    }
+
+    /**
+     * Blocks until the search finishes, so it must be called from Filter.performFiltering.
+     * @param filter models filter, may be null
+     * @return matching models, or null if the search failed
+     */
+    public static <T extends IdentificableModel> List<T> search(IDataSource<T> dataSource, CharSequence constraint, T filter) {
+        IDBDataSource<T> dbDataSource = (IDBDataSource<T>) dataSource;
+        String query = constraint == null ? "" : constraint.toString();
+        try {
+            Collection<T> result = filter != null ? dbDataSource.search(query, filter, 0).get() : dbDataSource.search(query, 0).get();
+            return new ArrayList<T>(result);
+        } catch (PillowError error) {
+            Log.e(LOG_ID, "search failed", error);
+            return null;
+        }
+    }
+
+    /**
+     * Filters a lazy list with a query instead of reading all its models: the text columns (or the projected fields)
+     * must contain the constraint (LIKE, case insensitive for ASCII letters).
+     * Blocks until the query finishes, so it must be called from Filter.performFiltering.
+     * @param filter models filter, may be null
+     * @param projection fields shown by the adapter (see IProjectedModelAdapter), or null for all the text columns
+     * @return matching models, to be closed, or null if the query failed
+     */
+    public static <T extends IdentificableModel> LazyModelList<T> lazyFilter(IDBDataSource<T> dataSource, CharSequence constraint, T filter, String[] projection) {
+        IDbMapping<T> mapping = dataSource.getDbMapping();
+        String pattern = "%" + constraint.toString().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        StringBuilder selection = new StringBuilder();
+        List<String> args = new ArrayList<String>();
+        for (String column : getFilterColumns(mapping, projection)) {
+            selection.append(selection.length() == 0 ? "(" : " OR ");
+            selection.append(column).append(" LIKE ? ESCAPE '\\'");
+            args.add(pattern);
+        }
+        selection.append(selection.length() == 0 ? "0" : ")");
+        if (filter != null) {
+            IDBSelection filterSelection = mapping.getSelection(filter);
+            if (filterSelection.getSelection() != null && filterSelection.getSelection().length() > 0) {
+                selection.append(" AND (").append(filterSelection.getSelection()).append(')');
+                args.addAll(Arrays.asList(filterSelection.getArgs()));
+            }
+        }
+        try {
+            return dataSource.lazyIndex(selection.toString(), args.toArray(new String[args.size()]), null).get();
+        } catch (PillowError error) {
+            Log.e(LOG_ID, "filter failed", error);
+            return null;
+        }
+    }
+
+    /**
+     * @return the projected fields stored in the table, or the text columns if projection is null
+     */
+    private static List<String> getFilterColumns(IDbMapping<?> mapping, String[] projection) {
+        List<String> columns = new ArrayList<String>();
+        if (projection != null) {
+            List<String> stored = Arrays.asList(mapping.getModelAttributesForProjection());
+            for (String field : projection) {
+                if (stored.contains(field))
+                    columns.add(field);
+            }
+        } else {
+            for (String[] attribute : mapping.getAttributes()) {
+                if (DBUtil.STRING_TYPE.equals(attribute[1]))
+                    columns.add(attribute[0]);
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,37 @@
+package com.mateuyabar.android.pillow.view.base;
+
+import com.mateuyabar.android.pillow.util.reflection.ReflectionUtil;
+import com.mateuyabar.util.exceptions.BreakFastException;
+
+import java.lang.reflect.Field;
+
+/**
+ * Text compared by the list filters when the model has no Searchable fields (see DbSearch).
+ */
+public class FilterText {
+
+    /**
+     * @param projection fields loaded in the model (see IProjectedModelAdapter), or null if all of them are loaded
+     * @return the toString of the model, or the values of the projected fields separated by spaces if it is partially
+     * loaded (toString may use fields that are not set)
+     */
+    public static String get(Object model, String[] projection) {
+        if (projection == null)
+            return model.toString();
+        StringBuilder result = new StringBuilder();
+        try {
+            for (String name : projection) {
+                Field field = ReflectionUtil.getStoredField(model.getClass(), name);
+                Object value = field == null ? null : field.get(model);
+                if (value != null) {
+                    if (result.length() > 0)
+                        result.append(' ');
+                    result.append(value);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new BreakFastException(e);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package com.mateuyabar.android.pillow.view.base;
+
+/**
+ * Model adapter that only uses some fields of the model. List adapters backed by a db data source
+ * will only read these fields, so the other fields of the models received in getView are not set.
+ * Their filters then compare the values of these fields instead of the toString of the models (see FilterText).
+ */
+public interface IProjectedModelAdapter<T> extends IModelAdapter<T> {
+    /**
+     * @return names of the model fields used by getView
+     */
+    public String[] getProjection();
+}
@@ -27,6 +27,8 @@ import android.widget.Filterable;
 
 import com.mateuyabar.android.pillow.data.IDataSource;
 import com.mateuyabar.android.pillow.data.IExtendedDataSource;
+import com.mateuyabar.android.pillow.data.db.IDBDataSource;
+import com.mateuyabar.android.pillow.data.db.LazyModelList;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.Listeners.ErrorListener;
 import com.mateuyabar.android.pillow.Listeners.ViewListener;
@@ -46,22 +48,30 @@ public abstract class PillowBaseListAdapter<T extends IdentificableModel> extend
 	T filter;
 	Context context;
 	List<T> models = new ArrayList<T>();
-	//In case that a filter is used, it contains the models before the filtering was executed
+	//In case that a filter is used, it contains the models before the filtering was executed (the same list, not a copy)
 	List<T> originalModels;
 	IDataSource<T> dataSource;
 	ErrorListener donwloadErrorListener = CommonListeners.defaultErrorListener;
 	ErrorListener refreshListErrorListener = CommonListeners.defaultErrorListener;
 	BasicFilter basicFilter = new BasicFilter();
 	Pillow pillow;
+	boolean lazyLoading;
+	boolean reloading;
+	boolean searchable;
 
 	public PillowBaseListAdapter(Context context, Class<T> clazz) {
 		super();
 		this.context = context;
 		this.pillow  = Pillow.getInstance(context);
 		this.dataSource = (IDataSource<T>) pillow.getDataSource(clazz);
+		this.searchable = DbSearch.isSearchable(dataSource);
 	}
 
 	public void refreshList(){
+		if(lazyLoading && dataSource instanceof IDBDataSource){
+			lazyRefreshList((IDBDataSource<T>) dataSource);
+			return;
+		}
 		ViewListener<Collection<T>> listener = new ViewListener<Collection<T>>(){
 			@Override
 			public void onResponse(Collection<T> postsResponse) {
@@ -71,12 +81,25 @@ public abstract class PillowBaseListAdapter<T extends IdentificableModel> extend
 		dataSourceIndex().addListeners(listener, CommonListeners.defaultErrorListener);
 	}
 
+	private void lazyRefreshList(IDBDataSource<T> dbDataSource){
+		ViewListener<LazyModelList<T>> listener = new ViewListener<LazyModelList<T>>(){
+			@Override
+			public void onResponse(LazyModelList<T> response) {
+				onModelsLoaded(response);
+			}
+		};
+		IPillowResult<LazyModelList<T>> result = filter!=null ? dbDataSource.lazyIndex(filter) : dbDataSource.lazyIndex(null, null, null);
+		result.addListeners(listener, CommonListeners.defaultErrorListener);
+	}
+
 	protected void onModelsLoaded(Collection<T> postsResponse) {
+		reloading = false;
+		if(models!=postsResponse)
+			closeModels();
 		if(postsResponse instanceof List){
 			models = (List)postsResponse;
 		} else {
-			models.clear();
-			models.addAll(postsResponse);
+			models = new ArrayList<T>(postsResponse);
 		}
 		notifyDataSetChanged();
 	}
@@ -92,6 +115,11 @@ public abstract class PillowBaseListAdapter<T extends IdentificableModel> extend
 //	}
 	
 	public IPillowResult<Collection<T>> dataSourceIndex(){
+		String[] projection = getProjection();
+		if(projection!=null && dataSource instanceof IDBDataSource){
+			IDBDataSource<T> dbDataSource = (IDBDataSource<T>) dataSource;
+			return filter!=null ? dbDataSource.projectedIndex(projection, filter) : dbDataSource.projectedIndex(projection, null, null, null);
+		}
 		if(filter!=null && dataSource instanceof IExtendedDataSource)
 			return ((IExtendedDataSource<T>)dataSource).index(filter);
 		else
@@ -115,8 +143,21 @@ public abstract class PillowBaseListAdapter<T extends IdentificableModel> extend
 
 	@Override
 	public View getView(int position, View convertView, ViewGroup parent) {
+		reloadIfStale();
 		return getView(getItem(position), convertView, parent);
 	}
+
+	/**
+	 * Reloads the models if they are a lazy list and the table has been modified since it was loaded, as the rows of
+	 * its cursor may have shifted. Called when a view is requested.
+	 */
+	public void reloadIfStale() {
+		List<T> loaded = originalModels != null ? originalModels : models;
+		if(!reloading && loaded instanceof LazyModelList && ((LazyModelList<T>) loaded).isStale()){
+			reloading = true;
+			refreshList();
+		}
+	}
 	
 	public abstract View getView(T model, View convertView, ViewGroup parent);
 
@@ -138,6 +179,37 @@ public abstract class PillowBaseListAdapter<T extends IdentificableModel> extend
 		return pillow;
 	}
 	
+	/**
+	 * If set and the data source is a db one, models are read from the cursor when shown instead of loading
+	 * all of them. In that case close must be called when the adapter is not needed anymore.
+	 */
+	public void setLazyLoading(boolean lazyLoading) {
+		this.lazyLoading = lazyLoading;
+	}
+
+	/**
+	 * Releases the cursor of the current models, if any.
+	 */
+	public void close() {
+		closeModels();
+	}
+
+	private void closeModels() {
+		if(models instanceof LazyModelList)
+			((LazyModelList<T>) models).close();
+		if(originalModels instanceof LazyModelList)
+			((LazyModelList<T>) originalModels).close();
+		originalModels = null;
+	}
+
+	/**
+	 * @return the fields shown by the adapter, or null if all are needed. If not null and the data source is
+	 * a db one, only these fields are loaded (models will be partially filled)
+	 */
+	protected String[] getProjection() {
+		return null;
+	}
+
 	public void setFilter(T filter) {
 		this.filter = filter;
 	}
@@ -148,27 +220,44 @@ public abstract class PillowBaseListAdapter<T extends IdentificableModel> extend
 	}
 	
 	/**
-	 * Filters the results using the tostring method.
+	 * Filters the results using the full text search index if the model has Searchable fields, or the tostring method
+	 * (the projected fields if the models are partially loaded, see FilterText).
+	 * A lazy list is filtered with a query (see DbSearch.lazyFilter) instead of reading all its models. The unfiltered
+	 * models are kept as loaded, and a lazy list kept open until the models are reloaded or the adapter closed.
 	 */
 	private class BasicFilter extends Filter{
 		@Override
 		protected FilterResults performFiltering(CharSequence constraint) {
-			if (originalModels == null && !models.isEmpty()) {
-				originalModels = new ArrayList<T>(models);
+			if (searchable) {
+				List<T> result = DbSearch.search(dataSource, constraint, filter);
+				if (result != null) {
+					FilterResults results = new FilterResults();
+					results.values = result;
+					results.count = result.size();
+					return results;
+				}
+			}
+			List<T> source = originalModels != null ? originalModels : models;
+			if (source instanceof LazyModelList && constraint != null && constraint.length() > 0) {
+				LazyModelList<T> result = DbSearch.lazyFilter((IDBDataSource<T>) dataSource, constraint, filter, getProjection());
+				if (result != null) {
+					FilterResults results = new FilterResults();
+					results.values = result;
+					results.count = result.size();
+					return results;
+				}
 			}
-			
+
 			FilterResults results = new FilterResults();
-			if (originalModels == null) {
-				results.values = new ArrayList();
-				results.count = 0;
-			} else if  (constraint == null || constraint.length() == 0) {
-				results.values = originalModels;
-				results.count = originalModels.size();
+			if  (constraint == null || constraint.length() == 0) {
+				results.values = source;
+				results.count = source.size();
 			} else {
 				List<T> startWith = new ArrayList<T>();
 				List<T> contains = new ArrayList<T>();
-				for (T model : originalModels) {
-					String modelString = model.toString().toLowerCase();
+				String[] projection = dataSource instanceof IDBDataSource ? getProjection() : null;
+				for (T model : source) {
+					String modelString = FilterText.get(model, projection).toLowerCase();
 					String constrainString = constraint.toString().toLowerCase();
 					if (modelString.startsWith(constrainString)) {
 						startWith.add(model);
@@ -187,16 +276,20 @@ public abstract class PillowBaseListAdapter<T extends IdentificableModel> extend
 
 		@Override
 		protected void publishResults(CharSequence constraint, FilterResults results) {
-			if (originalModels == null && !models.isEmpty()) {
-				originalModels = new ArrayList<T>(models);
+			if (originalModels == null) {
+				originalModels = models;
+			} else if (models != originalModels && models != results.values && models instanceof LazyModelList) {
+				//previous filter result
+				((LazyModelList<T>) models).close();
 			}
-			models.clear();
-			models.addAll((Collection<? extends T>) results.values);
+			models = (List<T>) results.values;
 			notifyDataSetChanged();
 		}
 	}
 
 	public void setModels(List<T> models) {
+		if(this.models!=models)
+			closeModels();
 		this.models = models;
 	}
 }
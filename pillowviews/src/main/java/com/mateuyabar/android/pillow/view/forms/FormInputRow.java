@@ -24,7 +24,10 @@ import android.util.TypedValue;
 import android.view.View;
 import android.widget.TextView;
 
+import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
 import com.mateuyabar.android.pillow.views.R;
+import com.mateuyabar.android.pillow.view.forms.inputDatas.display.BelongsToTextDisplay;
 import com.mateuyabar.android.pillow.view.reflection.ViewConfig.ViewType;
 import com.mateuyabar.util.exceptions.BreakFastException;
 
@@ -54,6 +57,11 @@ public class FormInputRow{
 			inputData = inputManager.getInputData(field, editable);
 			input = (View) inputData.getView(context);
 			try {
+				if(inputData instanceof BelongsToTextDisplay){
+					Field parentField = ClassMetadata.get(model.getClass()).getBelongsToModelField(field);
+					if(parentField!=null)
+						((BelongsToTextDisplay) inputData).setParent((IdentificableModel) parentField.get(model));
+				}
 				inputData.setValue(field.get(model));
 			} catch (Exception e) {
 				throw new BreakFastException(e);
@@ -23,6 +23,7 @@ import android.content.Context;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.data.validator.GreaterThanValidator;
 import com.mateuyabar.android.pillow.data.validator.annotations.GreaterThan;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
 import com.mateuyabar.android.pillow.util.reflection.ReflectionUtil;
 import com.mateuyabar.android.pillow.util.reflection.ViewReflectionUtil;
 import com.mateuyabar.android.pillow.view.forms.InputData.ValueChangedListener;
@@ -71,10 +72,9 @@ public class FormInputs {
 						if(ViewReflectionUtil.isHidden(field))
 							continue;
 
-						field.setAccessible(true);
 						inputViewMap.put(field, new FormInputRow(context, field, model, editable));
 						
-						GreaterThan greaterThan = field.getAnnotation(GreaterThan.class);
+						GreaterThan greaterThan = ClassMetadata.getFieldAnnotation(field, GreaterThan.class);
 						if(greaterThan!=null){
 							greaterThans.put(field, greaterThan);
 						}
@@ -88,7 +88,7 @@ public class FormInputs {
 				final InputData originInputData = originInputRow.getInputData();
 				final GreaterThan greaterThan = entry.getValue();
 				String greaterThanAtt = greaterThan.attribute();
-				Field greaterThanField = modelClass.getDeclaredField(greaterThanAtt);
+				Field greaterThanField = ReflectionUtil.getStoredField(modelClass, greaterThanAtt);
 				FormInputRow greaterThanInputRow = inputViewMap.get(greaterThanField);
 				if(greaterThanInputRow!=null){
 					greaterThanInputRow.getInputData().addOnValueChangedListener(new ValueChangedListener() {
@@ -137,12 +137,10 @@ public class FormInputs {
 	
 	private FormInputRow getInput(String fieldName){
 		initInputs();
-		try {
-			Field field = modelClass.getDeclaredField(fieldName);
-			return inputViewMap.get(field);
-		} catch (NoSuchFieldException e) {
+		Field field = ReflectionUtil.getStoredField(modelClass, fieldName);
+		if(field==null)
 			return null;
-		}
+		return inputViewMap.get(field);
 	}
 
 	public void updateModelFromForm() {
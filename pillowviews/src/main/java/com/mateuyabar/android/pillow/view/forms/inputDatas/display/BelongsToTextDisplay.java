@@ -28,6 +28,7 @@ import com.mateuyabar.android.pillow.view.forms.inputs.display.BelongsToTextView
 public class BelongsToTextDisplay<T extends IdentificableModel> extends AbstractInputData implements BelongsToInputData<T>{
 	Class<T> parentClass;
 	Object value;
+	T parent;
 	@Override
 	public Object getValue() {
 		return value;
@@ -38,10 +39,22 @@ public class BelongsToTextDisplay<T extends IdentificableModel> extends Abstract
 		this.parentClass = parentClass;
 	}
 	
+	/**
+	 * Parent already loaded (see DBModelController.include). Must be set before the value, that is then displayed
+	 * without reading the parent if the ids match.
+	 */
+	public void setParent(T parent) {
+		this.parent = parent;
+	}
+
 	@Override
 	public void setValue(Object value){
+		this.value = value;
 		String modelId = (String) value;
-		getView().setModelId(parentClass, modelId);
+		if(parent!=null && modelId!=null && modelId.equals(parent.getId()))
+			getView().setLoadedModel(parent);
+		else
+			getView().setModelId(parentClass, modelId);
 	}
 
 	protected String valueToString() {
@@ -62,6 +62,13 @@ public class BelongsToTextView<T extends IdentificableModel> extends TextView {
         }
     }
 
+    /**
+     * Model already loaded, displayed without reading it.
+     */
+    public void setLoadedModel(T model){
+        setText(model==null ? "" : model.toString());
+    }
+
     public void setModelId(Class<T> modelClass, String id){
         if(id==null){
             setModel(null);
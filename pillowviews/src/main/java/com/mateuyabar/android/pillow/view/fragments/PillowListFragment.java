@@ -57,7 +57,9 @@ public class PillowListFragment<T extends IdentificableModel> extends PillowBase
             getPresenter().setFilter(filter);
 
         listAdapter = createAdapter();
+        listAdapter.setFilter(filter);
         listview.setAdapter(listAdapter);
+        getPresenter().setProjection(listAdapter.getProjection());
 
         listview.setOnItemClickListener(this);
 
@@ -25,6 +25,7 @@ import android.view.ViewGroup;
 import com.mateuyabar.android.pillow.PillowView;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.view.base.IModelAdapter;
+import com.mateuyabar.android.pillow.view.base.IProjectedModelAdapter;
 import com.mateuyabar.android.pillow.view.base.PillowBaseListAdapter;
 import com.mateuyabar.android.pillow.views.R;
 
@@ -44,6 +45,13 @@ public class PillowListAdapter<T extends IdentificableModel> extends PillowBaseL
 	}
 
 
+	@Override
+	protected String[] getProjection() {
+		if(modelAdapter instanceof IProjectedModelAdapter)
+			return ((IProjectedModelAdapter<T>) modelAdapter).getProjection();
+		return null;
+	}
+
 	public IModelAdapter<T> getModelAdapter() {
 		return modelAdapter;
 	}
@@ -14,10 +14,10 @@ import com.mateuyabar.android.pillow.Pillow;
 import com.mateuyabar.android.pillow.PillowView;
 import com.mateuyabar.android.pillow.data.IDataSource;
 import com.mateuyabar.android.pillow.data.core.IPillowResult;
-import com.mateuyabar.android.pillow.data.core.PillowListResult;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.data.sync.CommonListeners;
 import com.mateuyabar.android.pillow.util.reflection.ReflectionUtil;
+import com.mateuyabar.android.pillow.view.base.DbSearch;
 import com.mateuyabar.android.pillow.view.base.IModelAdapter;
 import com.mateuyabar.android.pillow.views.R;
 import com.mateuyabar.util.exceptions.UnimplementedException;
@@ -47,11 +47,13 @@ public class PillowUsedExpandableListAdapter<T extends IdentificableModel> exten
 
 	protected LayoutInflater inflater;
 	IDataSource<T> dataSource;
+	boolean searchable;
 
 	public PillowUsedExpandableListAdapter(Context context, Class<T> modelClass) {
 		this.context = context;
 		this.modelClass = modelClass;
 		this.dataSource = (IDataSource<T>) Pillow.getInstance(context).getDataSource(modelClass);
+		this.searchable = DbSearch.isSearchable(dataSource);
 		this.inflater = LayoutInflater.from(context);
 		this.recentlyUsedModelsController = new RecentlyUsedModelsController(context, modelClass);
 		modelAdapter = PillowView.getInstance(context).getViewConfiguration(modelClass).getModelAdapter(context);
@@ -173,12 +175,11 @@ public class PillowUsedExpandableListAdapter<T extends IdentificableModel> exten
 
 
 		List<String> usedIds = recentlyUsedModelsController.getRecentlyUsedIds();
-		List<IPillowResult<T>> pillowResults = new ArrayList<>();
+		List<T> usedModels = new ArrayList<>();
 		for(String usedId: usedIds){
-			IPillowResult<T> result = dataSource.show(ReflectionUtil.createIdModel(modelClass, usedId));
-			pillowResults.add(result);
+			usedModels.add(ReflectionUtil.createIdModel(modelClass, usedId));
 		}
-		IPillowResult<List<T>> recentModelsResult = new PillowListResult<>(pillowResults);
+		IPillowResult<List<T>> recentModelsResult = dataSource.showAll(usedModels);
 		recentModelsResult.addListeners(new ViewListener<List<T>>() {
 			@Override
 			public void onResponse(List<T> response) {
@@ -195,7 +196,7 @@ public class PillowUsedExpandableListAdapter<T extends IdentificableModel> exten
 	}
 
 	/**
-	 * Filters the results using the tostring method.
+	 * Filters the results using the full text search index if the model has Searchable fields, or the tostring method.
 	 *
 	 * In case that called before recentModels loaded, it may behave not correclty. TODO check this.
 	 */
@@ -208,7 +209,11 @@ public class PillowUsedExpandableListAdapter<T extends IdentificableModel> exten
 			}
 
 			FilterResults results = new FilterResults();
-			if (originalAllModels == null) {
+			List<T> searchResult = searchable ? DbSearch.search(dataSource, constraint, null) : null;
+			if (searchResult != null) {
+				results.values = searchResult;
+				results.count = searchResult.size();
+			} else if (originalAllModels == null) {
 				results.values = new ArrayList();
 				results.count = 0;
 			} else if  (constraint == null || constraint.length() == 0) {
@@ -7,7 +7,9 @@ import com.mateuyabar.android.pillow.PillowError;
 import com.mateuyabar.android.pillow.data.IDataSource;
 import com.mateuyabar.android.pillow.data.IExtendedDataSource;
 import com.mateuyabar.android.pillow.data.core.IPillowResult;
+import com.mateuyabar.android.pillow.data.db.IDBDataSource;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
 import com.mateuyabar.android.pillow.view.CommonViewListeners;
 
 import java.util.Collection;
@@ -15,6 +17,8 @@ import java.util.Collection;
 public class PillowListPresenter<T extends IdentificableModel> extends PillowModelBasePresenter<T> {
     ViewRenderer view;
     T filter;
+    String[] projection;
+    String[] include;
     boolean dataLoaded = false;
 
 
@@ -36,8 +40,31 @@ public class PillowListPresenter<T extends IdentificableModel> extends PillowMod
         loadData();
     }
 
+    /**
+     * @param projection fields to load if the data source is a db one, or null to load all of them
+     */
+    public void setProjection(String[] projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * @param include belongs to fields whose parents are loaded with the models (in a query per parent class) if the
+     * data source is a db one. By default (null) all the belongs to fields with a parent field. Not used with a
+     * projection.
+     * @see com.mateuyabar.android.pillow.data.db.DBModelController#include
+     */
+    public void setInclude(String... include) {
+        this.include = include;
+    }
+
     public IPillowResult<Collection<T>> index(){
         IDataSource<T> dataSource =  getDataSource();
+        if(projection!=null && dataSource instanceof IDBDataSource){
+            IDBDataSource<T> dbDataSource = (IDBDataSource<T>) dataSource;
+            return filter!=null ? dbDataSource.projectedIndex(projection, filter) : dbDataSource.projectedIndex(projection, null, null, null);
+        }
+        if(dataSource instanceof IDBDataSource && (include!=null || ClassMetadata.get(modelClass).hasBelongsToModelFields()))
+            return ((IDBDataSource<T>) dataSource).indexIncluding(filter, include!=null ? include : new String[0]);
         if(filter!=null && dataSource instanceof IExtendedDataSource)
             return ((IExtendedDataSource<T>)dataSource).index(filter);
         else
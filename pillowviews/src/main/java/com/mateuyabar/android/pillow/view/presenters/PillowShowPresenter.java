@@ -3,8 +3,12 @@ package com.mateuyabar.android.pillow.view.presenters;
 import android.content.Context;
 
 import com.mateuyabar.android.pillow.Listeners;
+import com.mateuyabar.android.pillow.data.IDataSource;
+import com.mateuyabar.android.pillow.data.core.IPillowResult;
+import com.mateuyabar.android.pillow.data.db.IDBDataSource;
 import com.mateuyabar.android.pillow.data.models.IdentificableModel;
 import com.mateuyabar.android.pillow.data.sync.CommonListeners;
+import com.mateuyabar.android.pillow.util.reflection.ClassMetadata;
 import com.mateuyabar.util.exceptions.BreakFastException;
 
 /**
@@ -45,7 +49,7 @@ public class PillowShowPresenter<T extends IdentificableModel> extends PillowMod
             throw new BreakFastException(e);
         }
         idModel.setId(modelId);
-        getDataSource().show(idModel).addListeners(new Listeners.ViewListener<T>() {
+        show(idModel).addListeners(new Listeners.ViewListener<T>() {
             @Override
             public void onResponse(T model) {
                 PillowShowPresenter.this.model = model;
@@ -54,6 +58,17 @@ public class PillowShowPresenter<T extends IdentificableModel> extends PillowMod
         }, CommonListeners.defaultErrorListener);
     }
 
+    /**
+     * Loads the model with the parents of its belongs to fields with a parent field, if the data source is a db one
+     * @see com.mateuyabar.android.pillow.data.db.DBModelController#include
+     */
+    protected IPillowResult<T> show(T idModel){
+        IDataSource<T> dataSource = getDataSource();
+        if(dataSource instanceof IDBDataSource && ClassMetadata.get(modelClass).hasBelongsToModelFields())
+            return ((IDBDataSource<T>) dataSource).showIncluding(idModel);
+        return dataSource.show(idModel);
+    }
+
     public T getModel() {
         return model;
     }